@@ -0,0 +1,106 @@
+/*
+ *
+ * Copyright 2020 Wei-Ming Wu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+package com.github.wnameless.spring.routing.resolver.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.web.bind.annotation.RequestMethod;
+
+import com.github.wnameless.spring.routing.resolver.RoutingPath;
+import com.github.wnameless.spring.routing.resolver.RoutingPathResolver;
+import com.google.common.collect.Maps;
+
+/**
+ *
+ * {@link BatchLookupBenchmark} measures the serial and parallel batch lookups
+ * of a {@link RoutingPathResolver} built from {@link SyntheticControllers}.
+ * The parallel speedup is the ratio of both scores.
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchLookupBenchmark {
+
+  @Param({ "1000" })
+  int routes;
+
+  @Param({ "100000" })
+  int requests;
+
+  GenericApplicationContext appCtx;
+  RoutingPathResolver pathRes;
+  List<Entry<String, RequestMethod>> batch;
+
+  @Setup
+  public void setUp() {
+    appCtx = SyntheticControllers.newApplicationContext(routes);
+    pathRes = new RoutingPathResolver(appCtx, SyntheticControllers.PACKAGE);
+
+    // hits and misses of both literal and pattern routes
+    int controllers = (routes - 1) / SyntheticControllers.ROUTES_PER_CONTROLLER
+        + 1;
+    batch = new ArrayList<>(requests);
+    for (int i = 0; i < requests; i++) {
+      int controller = i % controllers;
+      int route = i % SyntheticControllers.ROUTES_PER_CONTROLLER;
+      batch.add(i % 2 == 0
+          ? Maps.immutableEntry(
+              SyntheticControllers.literalPath(controller, route),
+              RequestMethod.GET)
+          : Maps.immutableEntry(
+              SyntheticControllers.patternPath(controller, route),
+              RequestMethod.POST));
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    appCtx.close();
+  }
+
+  @Benchmark
+  public List<RoutingPath> serial() {
+    return pathRes.findByRequestPathsAndMethods(batch);
+  }
+
+  @Benchmark
+  public List<RoutingPath> parallel() {
+    return pathRes.findByRequestPathsAndMethods(batch, true);
+  }
+
+}
@@ -0,0 +1,55 @@
+/*
+ *
+ * Copyright 2020 Wei-Ming Wu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+package com.github.wnameless.spring.routing.resolver.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ *
+ * {@link Benchmarks} runs the JMH benchmarks with the GC profiler, so the
+ * allocation rate is always reported next to the timing. It accepts the same
+ * arguments as {@link org.openjdk.jmh.Main}, ex: LookupBenchmark -p
+ * routes=1000.
+ *
+ */
+public final class Benchmarks {
+
+  private Benchmarks() {}
+
+  /**
+   * Runs the JMH benchmarks.
+   * 
+   * @param args
+   *          the JMH command line options
+   * @throws CommandLineOptionException
+   *           if the options are invalid
+   * @throws RunnerException
+   *           if any benchmark fails
+   */
+  public static void main(String[] args)
+      throws CommandLineOptionException, RunnerException {
+    new Runner(new OptionsBuilder().parent(new CommandLineOptions(args))
+        .addProfiler(GCProfiler.class).build()).run();
+  }
+
+}
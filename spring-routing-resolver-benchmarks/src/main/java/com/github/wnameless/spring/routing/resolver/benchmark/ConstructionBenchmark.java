@@ -0,0 +1,111 @@
+/*
+ *
+ * Copyright 2020 Wei-Ming Wu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+package com.github.wnameless.spring.routing.resolver.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.support.GenericApplicationContext;
+
+import com.github.wnameless.spring.routing.resolver.RoutingPathResolver;
+
+/**
+ *
+ * {@link ConstructionBenchmark} measures the construction of a
+ * {@link RoutingPathResolver} from {@link SyntheticControllers}.
+ * <p>
+ * The annotation metadata of a controller class is cached for the whole
+ * process, so {@link #construct(FreshControllers)} generates new controller
+ * classes before every invocation to measure a cold construction, and
+ * {@link #constructWithCachedMetadata()} reuses the same classes to measure a
+ * construction whose metadata is cached, ex: another resolver or a refresh.
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConstructionBenchmark {
+
+  /**
+   *
+   * {@link FreshControllers} holds new controller classes for every
+   * invocation, so none of their metadata is cached.
+   *
+   */
+  @State(Scope.Thread)
+  public static class FreshControllers {
+
+    @Param({ "100", "1000", "10000" })
+    int routes;
+
+    GenericApplicationContext appCtx;
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+      appCtx = SyntheticControllers.newApplicationContext(routes);
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() {
+      appCtx.close();
+    }
+
+  }
+
+  @Param({ "100", "1000", "10000" })
+  int routes;
+
+  GenericApplicationContext appCtx;
+
+  @Setup
+  public void setUp() {
+    appCtx = SyntheticControllers.newApplicationContext(routes);
+  }
+
+  @TearDown
+  public void tearDown() {
+    appCtx.close();
+  }
+
+  @Benchmark
+  public RoutingPathResolver construct(FreshControllers controllers) {
+    return new RoutingPathResolver(controllers.appCtx,
+        SyntheticControllers.PACKAGE);
+  }
+
+  @Benchmark
+  public RoutingPathResolver constructWithCachedMetadata() {
+    return new RoutingPathResolver(appCtx, SyntheticControllers.PACKAGE);
+  }
+
+}
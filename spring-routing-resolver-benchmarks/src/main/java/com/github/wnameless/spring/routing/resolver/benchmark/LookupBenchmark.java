@@ -0,0 +1,125 @@
+/*
+ *
+ * Copyright 2020 Wei-Ming Wu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+package com.github.wnameless.spring.routing.resolver.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.github.wnameless.spring.routing.resolver.RoutingPath;
+import com.github.wnameless.spring.routing.resolver.RoutingPathResolver;
+
+/**
+ *
+ * {@link LookupBenchmark} measures the lookups of a {@link RoutingPathResolver}
+ * built from {@link SyntheticControllers}.
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LookupBenchmark {
+
+  @Param({ "100", "1000", "10000" })
+  int routes;
+
+  GenericApplicationContext appCtx;
+  RoutingPathResolver pathRes;
+  String literalPath;
+  String patternPath;
+  String missPath;
+
+  @Setup
+  public void setUp() {
+    appCtx = SyntheticControllers.newApplicationContext(routes);
+    pathRes = new RoutingPathResolver(appCtx, SyntheticControllers.PACKAGE);
+
+    // the last controller is the worst case of a linear scan
+    int last = (routes - 1) / SyntheticControllers.ROUTES_PER_CONTROLLER;
+    literalPath = SyntheticControllers.literalPath(last, 0);
+    patternPath = SyntheticControllers.patternPath(last, 2);
+    missPath = "/c" + last + "/none/123/items";
+  }
+
+  @TearDown
+  public void tearDown() {
+    appCtx.close();
+  }
+
+  @Benchmark
+  public List<RoutingPath> findByRequestPath() {
+    return pathRes.findByRequestPath(patternPath);
+  }
+
+  @Benchmark
+  public RoutingPath findByRequestPathAndMethodLiteralHit() {
+    return pathRes.findByRequestPathAndMethod(literalPath, RequestMethod.GET);
+  }
+
+  @Benchmark
+  public RoutingPath findByRequestPathAndMethodPatternHit() {
+    return pathRes.findByRequestPathAndMethod(patternPath, RequestMethod.POST);
+  }
+
+  @Benchmark
+  public RoutingPath findByRequestPathAndMethodMiss() {
+    return pathRes.findByRequestPathAndMethod(missPath, RequestMethod.GET);
+  }
+
+  @Benchmark
+  public List<RoutingPath> findByAnnotationType() {
+    return pathRes.findByAnnotationType(RestController.class);
+  }
+
+  @Benchmark
+  public List<RoutingPath> findByClassAnnotationType() {
+    return pathRes.findByClassAnnotationType(RequestMapping.class);
+  }
+
+  @Benchmark
+  public List<RoutingPath> findByMethodAnnotationType() {
+    return pathRes.findByMethodAnnotationType(GetMapping.class);
+  }
+
+  @Benchmark
+  public List<RoutingPath> findByParameterAnnotationType() {
+    return pathRes.findByParameterAnnotationType(PathVariable.class);
+  }
+
+}
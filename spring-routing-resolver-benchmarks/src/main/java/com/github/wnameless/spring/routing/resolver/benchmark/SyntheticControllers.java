@@ -0,0 +1,186 @@
+/*
+ *
+ * Copyright 2020 Wei-Ming Wu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+package com.github.wnameless.spring.routing.resolver.benchmark;
+
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.description.annotation.AnnotationDescription;
+import net.bytebuddy.description.modifier.Visibility;
+import net.bytebuddy.dynamic.DynamicType;
+import net.bytebuddy.dynamic.loading.ClassLoadingStrategy;
+import net.bytebuddy.implementation.FixedValue;
+
+/**
+ *
+ * {@link SyntheticControllers} generates Spring annotated controller classes
+ * with a given number of mapping methods, so the benchmarks can be run against
+ * route tables of any size.
+ * <p>
+ * Each controller is mapped to /c{index} and has up to
+ * {@link #ROUTES_PER_CONTROLLER} mapping methods. The mapping methods cycle
+ * through four kinds of routes:
+ * <ul>
+ * <li>GET /r{index}, a literal path</li>
+ * <li>GET /r{index}/{id}, a path variable</li>
+ * <li>POST /r{index}/{id}/items/{item}, two path variables</li>
+ * <li>/r{index}/**, a wildcard for all request methods</li>
+ * </ul>
+ *
+ */
+public final class SyntheticControllers {
+
+  /**
+   * The package of all generated controllers.
+   */
+  public static final String PACKAGE =
+      "com.github.wnameless.spring.routing.resolver.benchmark.generated";
+
+  /**
+   * The maximum number of mapping methods of a generated controller.
+   */
+  public static final int ROUTES_PER_CONTROLLER = 50;
+
+  private SyntheticControllers() {}
+
+  /**
+   * Generates controller classes which have given number of mapping methods in
+   * total.
+   * 
+   * @param routes
+   *          the number of mapping methods
+   * @return a list of controller classes
+   */
+  public static List<Class<?>> generate(int routes) {
+    List<Class<?>> controllers = new ArrayList<>();
+    for (int c = 0; c * ROUTES_PER_CONTROLLER < routes; c++) {
+      controllers.add(generateController(c,
+          Math.min(ROUTES_PER_CONTROLLER, routes - c * ROUTES_PER_CONTROLLER)));
+    }
+    return controllers;
+  }
+
+  /**
+   * Creates a refreshed {@link GenericApplicationContext} whose beans are the
+   * generated controllers.
+   * 
+   * @param routes
+   *          the number of mapping methods
+   * @return a {@link GenericApplicationContext}
+   */
+  public static GenericApplicationContext newApplicationContext(int routes) {
+    GenericApplicationContext appCtx = new GenericApplicationContext();
+    for (Class<?> controller : generate(routes)) {
+      appCtx.registerBean(controller);
+    }
+    appCtx.refresh();
+    return appCtx;
+  }
+
+  /**
+   * Returns the path of a literal route.
+   * 
+   * @param controller
+   *          the index of a controller
+   * @param route
+   *          the index of a route, it must be a multiple of 4
+   * @return a request path
+   */
+  public static String literalPath(int controller, int route) {
+    return "/c" + controller + "/r" + route;
+  }
+
+  /**
+   * Returns a request path which matches a route with two path variables.
+   * 
+   * @param controller
+   *          the index of a controller
+   * @param route
+   *          the index of a route, it must be 2 plus a multiple of 4
+   * @return a request path
+   */
+  public static String patternPath(int controller, int route) {
+    return "/c" + controller + "/r" + route + "/123/items/456";
+  }
+
+  private static Class<?> generateController(int index, int routes) {
+    DynamicType.Builder<Object> builder = new ByteBuddy().subclass(Object.class)
+        .name(PACKAGE + ".Controller" + index)
+        .annotateType(AnnotationDescription.Builder.ofType(RestController.class)
+            .build())
+        .annotateType(mapping(RequestMapping.class, "/c" + index));
+
+    for (int r = 0; r < routes; r++) {
+      String name = "route" + r;
+      switch (r % 4) {
+        case 0:
+          builder = builder.defineMethod(name, String.class, Visibility.PUBLIC)
+              .intercept(FixedValue.value(name))
+              .annotateMethod(mapping(GetMapping.class, "/r" + r));
+          break;
+        case 1:
+          builder = builder.defineMethod(name, String.class, Visibility.PUBLIC)
+              .withParameter(String.class, "id")
+              .annotateParameter(pathVariable("id"))
+              .intercept(FixedValue.value(name))
+              .annotateMethod(mapping(GetMapping.class, "/r" + r + "/{id}"));
+          break;
+        case 2:
+          builder = builder.defineMethod(name, String.class, Visibility.PUBLIC)
+              .withParameter(String.class, "id")
+              .annotateParameter(pathVariable("id"))
+              .withParameter(String.class, "item")
+              .annotateParameter(pathVariable("item"))
+              .intercept(FixedValue.value(name))
+              .annotateMethod(mapping(PostMapping.class,
+                  "/r" + r + "/{id}/items/{item}"));
+          break;
+        default:
+          builder = builder.defineMethod(name, String.class, Visibility.PUBLIC)
+              .intercept(FixedValue.value(name))
+              .annotateMethod(mapping(RequestMapping.class, "/r" + r + "/**"));
+      }
+    }
+
+    return builder.make()
+        .load(SyntheticControllers.class.getClassLoader(),
+            ClassLoadingStrategy.Default.WRAPPER)
+        .getLoaded();
+  }
+
+  private static AnnotationDescription mapping(
+      Class<? extends Annotation> type, String path) {
+    return AnnotationDescription.Builder.ofType(type)
+        .defineArray("value", path).build();
+  }
+
+  private static AnnotationDescription pathVariable(String name) {
+    return AnnotationDescription.Builder.ofType(PathVariable.class)
+        .define("value", name).build();
+  }
+
+}
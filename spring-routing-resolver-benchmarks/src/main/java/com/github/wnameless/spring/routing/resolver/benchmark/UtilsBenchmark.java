@@ -0,0 +1,70 @@
+/*
+ *
+ * Copyright 2020 Wei-Ming Wu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+package com.github.wnameless.spring.routing.resolver.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.wnameless.spring.routing.resolver.PathUtils;
+import com.github.wnameless.spring.routing.resolver.Regexs;
+
+/**
+ *
+ * {@link UtilsBenchmark} measures the path utilities used while building a
+ * {@link com.github.wnameless.spring.routing.resolver.RoutingPathResolver}.
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UtilsBenchmark {
+
+  // the same excluded patterns as RoutingPathResolver
+  static final Pattern[] EXCLUDED_PATTERNS = { //
+      Pattern.compile("\\$\\{[^}]+\\}"), Pattern.compile("\\{[^}]+\\}"),
+      Pattern.compile("\\*\\*"), Pattern.compile("\\*"),
+      Pattern.compile("\\?") };
+
+  String prefixPath = "/api/v1/";
+  String suffixPath = "/users/{id}/orders/";
+  String path = "/api/v1/users/{id}/orders/{orderId:\\d+}/**/*.json";
+
+  @Benchmark
+  public String joinPaths() {
+    return PathUtils.joinPaths(prefixPath, suffixPath);
+  }
+
+  @Benchmark
+  public String escapeSpecialCharacters() {
+    return Regexs.escapeSpecialCharacters(path, EXCLUDED_PATTERNS);
+  }
+
+}
@@ -0,0 +1,68 @@
+/*
+ *
+ * Copyright 2020 Wei-Ming Wu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+package com.github.wnameless.spring.routing.resolver.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.github.wnameless.spring.routing.resolver.RoutingPathResolver;
+
+public class SyntheticControllersTest {
+
+  @Test
+  public void testGenerate() {
+    assertEquals(1, SyntheticControllers.generate(1).size());
+    assertEquals(2, SyntheticControllers.generate(100).size());
+    assertEquals(3, SyntheticControllers.generate(101).size());
+    // new classes every time, so no metadata of them is cached
+    assertNotSame(SyntheticControllers.generate(1).get(0),
+        SyntheticControllers.generate(1).get(0));
+  }
+
+  @Test
+  public void testRoutes() {
+    try (GenericApplicationContext appCtx =
+        SyntheticControllers.newApplicationContext(101)) {
+      RoutingPathResolver pathRes =
+          new RoutingPathResolver(appCtx, SyntheticControllers.PACKAGE);
+      // 77 single method routes and 24 routes for all 8 request methods
+      assertEquals(77 + 24 * RequestMethod.values().length,
+          pathRes.getRoutingPaths().size());
+      assertEquals(pathRes.getRoutingPaths().size(),
+          pathRes.findByAnnotationType(RestController.class).size());
+      assertEquals(50,
+          pathRes.findByParameterAnnotationType(PathVariable.class).size());
+
+      assertEquals("/c1/r0",
+          pathRes.findByRequestPathAndMethod(
+              SyntheticControllers.literalPath(1, 0), RequestMethod.GET)
+              .getPath());
+      assertEquals("/c1/r2/{id}/items/{item}",
+          pathRes.findByRequestPathAndMethod(
+              SyntheticControllers.patternPath(1, 2), RequestMethod.POST)
+              .getPath());
+    }
+  }
+
+}
@@ -0,0 +1,270 @@
+/*
+ *
+ * Copyright 2020 Wei-Ming Wu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+package com.github.wnameless.spring.routing.resolver.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic.Kind;
+
+/**
+ * 
+ * {@link RoutingManifestProcessor} reads the request mapping annotations of
+ * Spring annotated controllers at compile time and generates a RoutingManifest
+ * class, so RoutingPathResolver#fromManifest can create a RoutingPathResolver
+ * without scanning controller beans at runtime.
+ * <p>
+ * The generated class is named by the processor option
+ * {@value #MANIFEST_OPTION}, otherwise {@value #DEFAULT_MANIFEST}. All
+ * controllers must be compiled together, because the manifest is written only
+ * once.
+ *
+ */
+// composed mapping annotations are only known by their meta-annotations
+@SupportedAnnotationTypes("*")
+@SupportedOptions(RoutingManifestProcessor.MANIFEST_OPTION)
+public final class RoutingManifestProcessor extends AbstractProcessor {
+
+  /**
+   * The processor option of the generated class name.
+   */
+  public static final String MANIFEST_OPTION = "routing.manifest";
+
+  /**
+   * The default name of the generated class.
+   */
+  public static final String DEFAULT_MANIFEST =
+      "com.github.wnameless.spring.routing.resolver.generated.GeneratedRoutingManifest";
+
+  // the same order as RoutingPathResolver scans mapping methods, the methods
+  // with composed mapping annotations are listed last
+  private static final List<String> MAPPING_ANNOTATIONS = Arrays.asList(
+      "org.springframework.web.bind.annotation.RequestMapping",
+      "org.springframework.web.bind.annotation.GetMapping",
+      "org.springframework.web.bind.annotation.PostMapping",
+      "org.springframework.web.bind.annotation.DeleteMapping",
+      "org.springframework.web.bind.annotation.PutMapping",
+      "org.springframework.web.bind.annotation.PatchMapping");
+
+  private static final String CONTROLLER =
+      "org.springframework.stereotype.Controller";
+
+  // controller binary name -> mapping methods as {name, parameter types...}
+  private final Map<String, List<List<String>>> controllers = new TreeMap<>();
+  private boolean generated;
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations,
+      RoundEnvironment roundEnv) {
+    Set<TypeElement> roundControllers = new LinkedHashSet<>();
+    for (TypeElement annotation : annotations) {
+      if (!isMappingAnnotation(annotation)) continue;
+
+      for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+        if (element.getKind() != ElementKind.METHOD) continue;
+
+        TypeElement cls = (TypeElement) element.getEnclosingElement();
+        if (cls.getKind() == ElementKind.CLASS
+            && !cls.getModifiers().contains(Modifier.ABSTRACT)
+            && isAnnotatedBy(cls, CONTROLLER, new HashSet<>())) {
+          roundControllers.add(cls);
+        }
+      }
+    }
+    if (roundControllers.isEmpty()) return false;
+
+    if (generated) {
+      for (TypeElement cls : roundControllers) {
+        processingEnv.getMessager().printMessage(Kind.ERROR,
+            "Controller is generated after the RoutingManifest is written",
+            cls);
+      }
+      return false;
+    }
+
+    for (TypeElement cls : roundControllers) {
+      controllers.put(binaryName(cls), mappingMethods(cls));
+    }
+    writeManifest(roundControllers);
+    generated = true;
+
+    return false;
+  }
+
+  private List<List<String>> mappingMethods(TypeElement cls) {
+    List<List<List<String>>> buckets = new ArrayList<>();
+    for (int i = 0; i <= MAPPING_ANNOTATIONS.size(); i++) {
+      buckets.add(new ArrayList<>());
+    }
+    for (Element element : cls.getEnclosedElements()) {
+      if (element.getKind() != ElementKind.METHOD) continue;
+      int bucket = mappingBucket(element);
+      if (bucket == -1) continue;
+
+      ExecutableElement method = (ExecutableElement) element;
+      List<String> mappingMethod = new ArrayList<>();
+      mappingMethod.add(method.getSimpleName().toString());
+      for (VariableElement parameter : method.getParameters()) {
+        mappingMethod.add(typeName(parameter.asType()));
+      }
+      buckets.get(bucket).add(mappingMethod);
+    }
+
+    List<List<String>> mappingMethods = new ArrayList<>();
+    buckets.forEach(mappingMethods::addAll);
+    return mappingMethods;
+  }
+
+  // the bucket of the mapping merged by RoutingPathResolver: a RequestMapping
+  // first, otherwise the first declared mapping annotation
+  private int mappingBucket(Element element) {
+    int bucket = -1;
+    for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+      TypeElement type = (TypeElement) mirror.getAnnotationType().asElement();
+      int index =
+          MAPPING_ANNOTATIONS.indexOf(type.getQualifiedName().toString());
+      if (index == 0) return 0;
+      if (index == -1 && isMappingAnnotation(type))
+        index = MAPPING_ANNOTATIONS.size();
+      if (bucket == -1) bucket = index;
+    }
+    return bucket;
+  }
+
+  private boolean isMappingAnnotation(TypeElement annotation) {
+    String requestMapping = MAPPING_ANNOTATIONS.get(0);
+    return annotation.getQualifiedName().contentEquals(requestMapping)
+        || isAnnotatedBy(annotation, requestMapping, new HashSet<>());
+  }
+
+  private void writeManifest(Set<TypeElement> originatingElements) {
+    String manifest =
+        processingEnv.getOptions().getOrDefault(MANIFEST_OPTION,
+            DEFAULT_MANIFEST);
+    int lastDot = manifest.lastIndexOf('.');
+
+    try (PrintWriter out = new PrintWriter(processingEnv.getFiler()
+        .createSourceFile(manifest,
+            originatingElements.toArray(new Element[0]))
+        .openWriter())) {
+      if (lastDot != -1) {
+        out.println("package " + manifest.substring(0, lastDot) + ";");
+        out.println();
+      }
+      out.println("import java.util.Arrays;");
+      out.println("import java.util.Collections;");
+      out.println("import java.util.List;");
+      out.println();
+      out.println(
+          "import com.github.wnameless.spring.routing.resolver.MappingMethod;");
+      out.println(
+          "import com.github.wnameless.spring.routing.resolver.RoutingManifest;");
+      out.println();
+      out.println("public final class " + manifest.substring(lastDot + 1)
+          + " implements RoutingManifest {");
+      out.println();
+      out.println(
+          "  private static final List<MappingMethod> MAPPING_METHODS =");
+      out.print("      Collections.unmodifiableList(Arrays.asList(");
+      String separator = "";
+      for (Map.Entry<String, List<List<String>>> controller : controllers
+          .entrySet()) {
+        for (List<String> mappingMethod : controller.getValue()) {
+          out.println(separator);
+          out.print("          new MappingMethod(\"" + controller.getKey()
+              + "\"");
+          for (String name : mappingMethod) {
+            out.print(", \"" + name + "\"");
+          }
+          out.print(")");
+          separator = ",";
+        }
+      }
+      out.println("));");
+      out.println();
+      out.println("  @Override");
+      out.println("  public List<MappingMethod> getMappingMethods() {");
+      out.println("    return MAPPING_METHODS;");
+      out.println("  }");
+      out.println();
+      out.println("}");
+    } catch (IOException e) {
+      processingEnv.getMessager().printMessage(Kind.ERROR,
+          "Failed to write " + manifest + ": " + e.getMessage());
+    }
+  }
+
+  private boolean isAnnotatedBy(Element element, String annotation,
+      Set<String> visited) {
+    for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+      TypeElement type = (TypeElement) mirror.getAnnotationType().asElement();
+      String name = type.getQualifiedName().toString();
+      if (name.equals(annotation)) return true;
+      // meta-annotations, ex: @RestController is annotated by @Controller
+      if (visited.add(name) && isAnnotatedBy(type, annotation, visited))
+        return true;
+    }
+    return false;
+  }
+
+  private String binaryName(TypeElement type) {
+    return processingEnv.getElementUtils().getBinaryName(type).toString();
+  }
+
+  // the erased type name which can be loaded by Class#forName
+  private String typeName(TypeMirror type) {
+    TypeMirror erased = processingEnv.getTypeUtils().erasure(type);
+    switch (erased.getKind()) {
+      case ARRAY:
+        return typeName(((ArrayType) erased).getComponentType()) + "[]";
+      case DECLARED:
+        return binaryName((TypeElement) ((DeclaredType) erased).asElement());
+      default:
+        return erased.toString();
+    }
+  }
+
+}
@@ -0,0 +1,181 @@
+/*
+ *
+ * Copyright 2020 Wei-Ming Wu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+package com.github.wnameless.spring.routing.resolver.processor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class RoutingManifestProcessorTest {
+
+  @TempDir
+  Path generatedDir;
+
+  @Test
+  public void testGeneratedManifest() throws IOException {
+    String manifest = process("-Arouting.manifest=com.example.Manifest",
+        source("com.example.web.HomeController",
+            "package com.example.web;",
+            "import java.util.List;",
+            "import org.springframework.stereotype.Controller;",
+            "import org.springframework.web.bind.annotation.*;",
+            "@Controller",
+            "@RequestMapping(\"/home\")",
+            "public class HomeController {",
+            "  @PostMapping(\"/b\") String b(List<String> a, int[] b) {",
+            "    return \"b\";",
+            "  }",
+            "  @GetMapping(\"/a\") String a(String a, int b) { return \"a\"; }",
+            "  @GetJson String g() { return \"g\"; }",
+            "  @RequestMapping(\"/c\") String c() { return \"c\"; }",
+            "  String notMapped() { return \"\"; }",
+            "  @RestController",
+            "  public static class Inner {",
+            "    @PatchMapping String d(Inner... inners) { return \"d\"; }",
+            "  }",
+            "}"),
+        source("com.example.web.GetJson",
+            "package com.example.web;",
+            "import org.springframework.web.bind.annotation.*;",
+            "@RequestMapping(method = RequestMethod.GET)",
+            "public @interface GetJson {}"),
+        source("com.example.web.NotController",
+            "package com.example.web;",
+            "import org.springframework.web.bind.annotation.*;",
+            "public class NotController {",
+            "  @GetMapping(\"/e\") String e() { return \"e\"; }",
+            "}"),
+        source("com.example.web.AbstractController",
+            "package com.example.web;",
+            "import org.springframework.web.bind.annotation.*;",
+            "@RestController",
+            "public abstract class AbstractController {",
+            "  @GetMapping(\"/f\") String f() { return \"f\"; }",
+            "}"));
+
+    assertTrue(manifest.startsWith("package com.example;"));
+    assertTrue(manifest.contains(
+        "public final class Manifest implements RoutingManifest {"));
+    assertEquals(Arrays.asList(
+        "new MappingMethod(\"com.example.web.HomeController\", \"c\")",
+        "new MappingMethod(\"com.example.web.HomeController\", \"a\","
+            + " \"java.lang.String\", \"int\")",
+        "new MappingMethod(\"com.example.web.HomeController\", \"b\","
+            + " \"java.util.List\", \"int[]\")",
+        "new MappingMethod(\"com.example.web.HomeController\", \"g\")",
+        "new MappingMethod(\"com.example.web.HomeController$Inner\", \"d\","
+            + " \"com.example.web.HomeController$Inner[]\")"),
+        mappingMethods(manifest));
+  }
+
+  @Test
+  public void testDefaultManifestName() throws IOException {
+    String manifest = process(null,
+        source("com.example.web.HomeController",
+            "package com.example.web;",
+            "import org.springframework.web.bind.annotation.*;",
+            "@RestController",
+            "public class HomeController {",
+            "  @GetMapping(\"/a\") String a() { return \"a\"; }",
+            "}"));
+
+    assertTrue(manifest.startsWith(
+        "package com.github.wnameless.spring.routing.resolver.generated;"));
+    assertTrue(manifest.contains("public final class GeneratedRoutingManifest"
+        + " implements RoutingManifest {"));
+  }
+
+  private List<String> mappingMethods(String manifest) {
+    return Arrays.asList(Arrays.stream(manifest.split("\n")).map(String::trim)
+        .filter(line -> line.startsWith("new MappingMethod("))
+        .map(line -> line.replaceFirst("\\)*[,;]?$", ")"))
+        .toArray(String[]::new));
+  }
+
+  private String process(String option, JavaFileObject... sources)
+      throws IOException {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    DiagnosticCollector<JavaFileObject> diagnostics =
+        new DiagnosticCollector<>();
+    try (StandardJavaFileManager fileManager =
+        compiler.getStandardFileManager(diagnostics, null, null)) {
+      List<String> options = new ArrayList<>(Arrays.asList(
+          "-proc:only", "-s", generatedDir.toString(), "-classpath",
+          System.getProperty("java.class.path")));
+      if (option != null) options.add(option);
+
+      // the core types referred by the generated manifest
+      List<JavaFileObject> units = new ArrayList<>(Arrays.asList(sources));
+      units.add(source(
+          "com.github.wnameless.spring.routing.resolver.MappingMethod",
+          "package com.github.wnameless.spring.routing.resolver;",
+          "public final class MappingMethod {",
+          "  public MappingMethod(String c, String m, String... p) {}",
+          "}"));
+      units.add(source(
+          "com.github.wnameless.spring.routing.resolver.RoutingManifest",
+          "package com.github.wnameless.spring.routing.resolver;",
+          "public interface RoutingManifest {",
+          "  java.util.List<MappingMethod> getMappingMethods();",
+          "}"));
+
+      JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager,
+          diagnostics, options, null, units);
+      task.setProcessors(Arrays.asList(new RoutingManifestProcessor()));
+      assertTrue(task.call(), diagnostics.getDiagnostics().toString());
+    }
+
+    try (Stream<Path> files = Files.walk(generatedDir)) {
+      Path generated = files.filter(Files::isRegularFile).findFirst().get();
+      return new String(Files.readAllBytes(generated),
+          StandardCharsets.UTF_8);
+    }
+  }
+
+  private JavaFileObject source(String className, String... lines) {
+    return new SimpleJavaFileObject(
+        URI.create(
+            "string:///" + className.replace('.', '/') + ".java"),
+        JavaFileObject.Kind.SOURCE) {
+      @Override
+      public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+        return String.join("\n", lines);
+      }
+    };
+  }
+
+}
@@ -0,0 +1,327 @@
+/*
+ *
+ * Copyright 2020 Wei-Ming Wu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+package com.github.wnameless.spring.routing.resolver;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.web.bind.annotation.RequestMethod;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Throwables;
+
+/**
+ *
+ * {@link AccessLogAnalyzer} attributes the lines of an access log to the
+ * {@link RoutingPath}s of a {@link RoutingPathResolver}, ex: to find the
+ * routing paths which are never requested. It is an immutable class, every
+ * <i>with</i> method returns a new copy.
+ * <p>
+ * The log file is memory mapped chunk by chunk, each chunk ends at a line
+ * break and is analyzed in parallel by the {@link Executor}. At most as many
+ * chunks as the parallelism of the {@link Executor} are in flight, and the
+ * counts of each chunk are merged into the total as soon as it completes, so
+ * the memory is bounded by the chunk size, the parallelism and the number of
+ * routing paths instead of the size of the log file.
+ *
+ */
+public final class AccessLogAnalyzer {
+
+  /**
+   * The line format of the Common and Combined Log Format, ex: 127.0.0.1 - -
+   * [10/Oct/2000:13:55:36 -0700] "GET /index.html?q=1 HTTP/1.0" 200 2326. The
+   * query string is not part of the path.
+   */
+  public static final Pattern COMMON_LOG_FORMAT =
+      Pattern.compile("\"(?<method>[A-Z]+) (?<path>[^ ?#\"]*)[^\"]*\"");
+
+  private static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+  private static final RequestMethod[] METHODS = RequestMethod.values();
+
+  private final RoutingPathResolver pathRes;
+  private final Pattern lineFormat;
+  private final int chunkSize;
+  private final Executor executor;
+  private final Charset charset;
+
+  private AccessLogAnalyzer(RoutingPathResolver pathRes, Pattern lineFormat,
+      int chunkSize, Executor executor, Charset charset) {
+    this.pathRes = pathRes;
+    this.lineFormat = lineFormat;
+    this.chunkSize = chunkSize;
+    this.executor = executor;
+    this.charset = charset;
+  }
+
+  /**
+   * Creates an {@link AccessLogAnalyzer} which reads UTF-8 log lines in
+   * {@link #COMMON_LOG_FORMAT} by 8 MB chunks on the common
+   * {@link ForkJoinPool}.
+   *
+   * @param pathRes
+   *          a {@link RoutingPathResolver}
+   * @return an {@link AccessLogAnalyzer}
+   */
+  public static AccessLogAnalyzer of(RoutingPathResolver pathRes) {
+    return new AccessLogAnalyzer(checkNotNull(pathRes), COMMON_LOG_FORMAT,
+        DEFAULT_CHUNK_SIZE, ForkJoinPool.commonPool(), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Returns a copy of this analyzer which parses the log lines by given
+   * {@link Pattern}. The first match of a line must capture the request
+   * method by the named group <i>method</i> and the request path by the named
+   * group <i>path</i>, otherwise the line is counted as malformed.
+   *
+   * @param lineFormat
+   *          a {@link Pattern} with the named groups method and path
+   * @return a new {@link AccessLogAnalyzer}
+   */
+  public AccessLogAnalyzer withLineFormat(Pattern lineFormat) {
+    checkArgument(
+        lineFormat.pattern().contains("(?<method>")
+            && lineFormat.pattern().contains("(?<path>"),
+        "lineFormat must contain the named groups method and path");
+    return new AccessLogAnalyzer(pathRes, lineFormat, chunkSize, executor,
+        charset);
+  }
+
+  /**
+   * Returns a copy of this analyzer which maps the log file by chunks of given
+   * size. A chunk is extended to the end of its last line.
+   *
+   * @param chunkSize
+   *          the number of bytes of a chunk
+   * @return a new {@link AccessLogAnalyzer}
+   */
+  public AccessLogAnalyzer withChunkSize(int chunkSize) {
+    checkArgument(chunkSize > 0, "chunkSize must be positive");
+    return new AccessLogAnalyzer(pathRes, lineFormat, chunkSize, executor,
+        charset);
+  }
+
+  /**
+   * Returns a copy of this analyzer which analyzes the chunks by given
+   * {@link Executor}. The number of chunks in flight is the parallelism of a
+   * {@link ForkJoinPool}, otherwise the number of available processors.
+   *
+   * @param executor
+   *          an {@link Executor}
+   * @return a new {@link AccessLogAnalyzer}
+   */
+  public AccessLogAnalyzer withExecutor(Executor executor) {
+    return new AccessLogAnalyzer(pathRes, lineFormat, chunkSize,
+        checkNotNull(executor), charset);
+  }
+
+  /**
+   * Returns a copy of this analyzer which decodes the log file by given
+   * {@link Charset}. The {@link Charset} must encode a line feed as a single
+   * byte, ex: UTF-8 or ISO-8859-1. Malformed bytes are replaced.
+   *
+   * @param charset
+   *          a {@link Charset}
+   * @return a new {@link AccessLogAnalyzer}
+   */
+  public AccessLogAnalyzer withCharset(Charset charset) {
+    return new AccessLogAnalyzer(pathRes, lineFormat, chunkSize, executor,
+        checkNotNull(charset));
+  }
+
+  /**
+   * Attributes each line of given log file to the most specific
+   * {@link RoutingPath} of its request path and request method. Empty lines
+   * are skipped.
+   *
+   * @param logFile
+   *          the {@link Path} of an access log
+   * @return an {@link AccessLogReport}
+   * @throws IOException
+   *           if the log file can't be read
+   */
+  public AccessLogReport analyze(Path logFile) throws IOException {
+    try (FileChannel channel =
+        FileChannel.open(logFile, StandardOpenOption.READ)) {
+      long size = channel.size();
+      int parallelism = executor instanceof ForkJoinPool
+          ? ((ForkJoinPool) executor).getParallelism()
+          : Runtime.getRuntime().availableProcessors();
+      CompletionService<Tally> chunks =
+          new ExecutorCompletionService<>(executor);
+
+      Tally total = new Tally();
+      Throwable failure = null;
+      int inFlight = 0;
+      for (long start = 0; start < size || inFlight > 0;) {
+        if (failure == null && start < size && inFlight < parallelism) {
+          long chunkStart = start;
+          long chunkEnd =
+              nextLineStart(channel, Math.min(start + chunkSize, size), size);
+          chunks.submit(() -> analyzeChunk(channel, chunkStart, chunkEnd));
+          inFlight++;
+          start = chunkEnd;
+          continue;
+        }
+
+        // the chunks in flight are drained before the channel is closed
+        inFlight--;
+        try {
+          Tally tally = chunks.take().get();
+          if (failure == null) total.merge(tally);
+        } catch (ExecutionException e) {
+          if (failure == null) failure = e.getCause();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Interrupted while analyzing");
+        }
+        if (failure != null && inFlight == 0) break;
+      }
+      if (failure != null) {
+        Throwables.throwIfUnchecked(failure);
+        throw new IllegalStateException(failure);
+      }
+
+      return new AccessLogReport(pathRes.getRoutingPaths(), total.counts,
+          total.unmatched, total.malformed);
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  // the position after the first line feed at or after given position - 1
+  private static long nextLineStart(FileChannel channel, long position,
+      long size) throws IOException {
+    if (position >= size) return size;
+
+    ByteBuffer buffer = ByteBuffer.allocate(8192);
+    for (long pos = position - 1; pos < size;) {
+      buffer.clear();
+      int read = channel.read(buffer, pos);
+      if (read <= 0) break;
+      for (int i = 0; i < read; i++) {
+        if (buffer.get(i) == '\n') return pos + i + 1;
+      }
+      pos += read;
+    }
+    return size;
+  }
+
+  private Tally analyzeChunk(FileChannel channel, long start, long end) {
+    CharBuffer chars;
+    try {
+      chars = charset.newDecoder()
+          .onMalformedInput(CodingErrorAction.REPLACE)
+          .onUnmappableCharacter(CodingErrorAction.REPLACE)
+          .decode(channel.map(MapMode.READ_ONLY, start, end - start));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    Tally tally = new Tally();
+    Matcher matcher = lineFormat.matcher(chars);
+    int length = chars.length();
+    for (int lineStart = 0; lineStart < length;) {
+      int lineEnd = lineStart;
+      while (lineEnd < length && chars.get(lineEnd) != '\n') {
+        lineEnd++;
+      }
+      int nextLineStart = lineEnd + 1;
+      if (lineEnd > lineStart && chars.get(lineEnd - 1) == '\r') lineEnd--;
+
+      if (lineEnd > lineStart) {
+        attribute(matcher.region(lineStart, lineEnd), chars, tally);
+      }
+      lineStart = nextLineStart;
+    }
+    return tally;
+  }
+
+  private void attribute(Matcher matcher, CharSequence chars, Tally tally) {
+    if (!matcher.find() || matcher.start("method") < 0
+        || matcher.start("path") < 0) {
+      tally.malformed++;
+      return;
+    }
+
+    RequestMethod method =
+        toRequestMethod(chars, matcher.start("method"), matcher.end("method"));
+    RoutingPath routingPath = method == null ? null
+        : pathRes.findBestMatchByRequestPathAndMethod(chars,
+            matcher.start("path"), matcher.end("path"), method);
+    if (routingPath == null) {
+      tally.unmatched++;
+    } else {
+      tally.counts.computeIfAbsent(routingPath, rp -> new long[1])[0]++;
+    }
+  }
+
+  private static RequestMethod toRequestMethod(CharSequence chars, int start,
+      int end) {
+    for (RequestMethod method : METHODS) {
+      if (CharSequenceTable.regionEquals(method.name(), chars, start, end))
+        return method;
+    }
+    return null;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this).add("lineFormat", lineFormat)
+        .add("chunkSize", chunkSize).add("executor", executor)
+        .add("charset", charset).toString();
+  }
+
+  // the counts of a chunk, keyed by the identity of RoutingPaths
+  private static final class Tally {
+
+    final Map<RoutingPath, long[]> counts = new IdentityHashMap<>();
+    long unmatched;
+    long malformed;
+
+    void merge(Tally other) {
+      other.counts.forEach((routingPath, count) -> counts
+          .computeIfAbsent(routingPath, rp -> new long[1])[0] += count[0]);
+      unmatched += other.unmatched;
+      malformed += other.malformed;
+    }
+
+  }
+
+}
@@ -0,0 +1,150 @@
+/*
+ *
+ * Copyright 2020 Wei-Ming Wu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+package com.github.wnameless.spring.routing.resolver;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+
+/**
+ * 
+ * {@link AccessLogReport} is the result of an {@link AccessLogAnalyzer}, the
+ * number of log lines attributed to each {@link RoutingPath}. It is an
+ * immutable class.
+ *
+ */
+public final class AccessLogReport {
+
+  private final List<Entry<RoutingPath, Long>> routingPathCounts;
+  private final long unmatchedCount;
+  private final long malformedCount;
+
+  AccessLogReport(List<RoutingPath> routingPaths,
+      Map<RoutingPath, long[]> counts, long unmatchedCount,
+      long malformedCount) {
+    // RoutingPaths are counted by identity, because some may be equal
+    Map<RoutingPath, long[]> remaining = new IdentityHashMap<>(counts);
+    ImmutableList.Builder<Entry<RoutingPath, Long>> builder =
+        ImmutableList.builder();
+    for (RoutingPath routingPath : routingPaths) {
+      long[] count = remaining.remove(routingPath);
+      builder.add(
+          Maps.immutableEntry(routingPath, count == null ? 0L : count[0]));
+    }
+    // removed by a refresh while analyzing
+    remaining.forEach((routingPath, count) -> builder
+        .add(Maps.immutableEntry(routingPath, count[0])));
+
+    routingPathCounts = builder.build();
+    this.unmatchedCount = unmatchedCount;
+    this.malformedCount = malformedCount;
+  }
+
+  /**
+   * Returns the number of log lines of each {@link RoutingPath} in the order
+   * of {@link RoutingPathResolver#getRoutingPaths()}, including the
+   * {@link RoutingPath}s which are never requested.
+   * 
+   * @return an immutable list of {@link RoutingPath}s and their counts
+   */
+  public List<Entry<RoutingPath, Long>> getRoutingPathCounts() {
+    return routingPathCounts;
+  }
+
+  /**
+   * Returns the {@link RoutingPath}s which are never requested.
+   * 
+   * @return an immutable list of {@link RoutingPath}
+   */
+  public List<RoutingPath> getUnusedRoutingPaths() {
+    return routingPathCounts.stream().filter(e -> e.getValue() == 0)
+        .map(Entry::getKey).collect(ImmutableList.toImmutableList());
+  }
+
+  /**
+   * Returns the number of log lines without any matched {@link RoutingPath}.
+   * 
+   * @return the number of unmatched lines
+   */
+  public long getUnmatchedCount() {
+    return unmatchedCount;
+  }
+
+  /**
+   * Returns the number of log lines which don't fit the line format.
+   * 
+   * @return the number of malformed lines
+   */
+  public long getMalformedCount() {
+    return malformedCount;
+  }
+
+  /**
+   * Returns the number of analyzed log lines, empty lines are not included.
+   * 
+   * @return the number of lines
+   */
+  public long getLineCount() {
+    return routingPathCounts.stream().mapToLong(Entry::getValue).sum()
+        + unmatchedCount + malformedCount;
+  }
+
+  /**
+   * Writes a tab separated summary, the totals first and then the count, the
+   * request method and the raw path of each {@link RoutingPath} from the most
+   * requested to the unused ones.
+   * 
+   * @param out
+   *          an {@link Appendable} to write to
+   * @throws IOException
+   *           if the summary can't be written
+   */
+  public void writeTo(Appendable out) throws IOException {
+    out.append("lines\t").append(String.valueOf(getLineCount())).append('\n');
+    out.append("unmatched\t").append(String.valueOf(unmatchedCount))
+        .append('\n');
+    out.append("malformed\t").append(String.valueOf(malformedCount))
+        .append('\n');
+
+    List<Entry<RoutingPath, Long>> sorted = routingPathCounts.stream()
+        .sorted(Comparator.comparing(Entry<RoutingPath, Long>::getValue)
+            .reversed())
+        .collect(ImmutableList.toImmutableList());
+    for (Entry<RoutingPath, Long> entry : sorted) {
+      out.append(String.valueOf(entry.getValue())).append('\t')
+          .append(entry.getKey().getMethod().name()).append('\t')
+          .append(entry.getKey().getRawPath()).append('\n');
+    }
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("lineCount", getLineCount()).add("unmatchedCount", unmatchedCount)
+        .add("malformedCount", malformedCount)
+        .add("unusedCount", getUnusedRoutingPaths().size()).toString();
+  }
+
+}
@@ -0,0 +1,141 @@
+/*
+ *
+ * Copyright 2020 Wei-Ming Wu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+package com.github.wnameless.spring.routing.resolver;
+
+import java.lang.annotation.Annotation;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ListMultimap;
+
+/**
+ *
+ * {@link AnnotationIndex} is an inverted index from annotation types to the
+ * {@link RoutingPath}s annotated by them on class, method or parameter level.
+ * All the returned lists are immutable and shared.
+ *
+ */
+final class AnnotationIndex {
+
+  private final ListMultimap<Class<?>, RoutingPath> classIndex;
+  private final ListMultimap<Class<?>, RoutingPath> methodIndex;
+  private final ListMultimap<Class<?>, RoutingPath> parameterIndex;
+  private final ListMultimap<Class<?>, RoutingPath> anyIndex;
+
+  /**
+   * Creates an {@link AnnotationIndex}.
+   *
+   * @param routingPaths
+   *          {@link RoutingPath}s in insertion order
+   */
+  AnnotationIndex(Collection<RoutingPath> routingPaths) {
+    classIndex = index(routingPaths,
+        rp -> annotationTypes(rp.getClassAnnotations()));
+    methodIndex = index(routingPaths,
+        rp -> annotationTypes(rp.getMethodAnnotations()));
+    parameterIndex = index(routingPaths, rp -> {
+      Set<Class<?>> types = new LinkedHashSet<>();
+      for (List<Annotation> annos : rp.getParameterAnnotations()) {
+        types.addAll(annotationTypes(annos));
+      }
+      return types;
+    });
+    anyIndex = index(routingPaths, rp -> {
+      Set<Class<?>> types = annotationTypes(rp.getClassAnnotations());
+      types.addAll(annotationTypes(rp.getMethodAnnotations()));
+      return types;
+    });
+  }
+
+  /**
+   * Returns {@link RoutingPath}s annotated by given annotation type on class
+   * level.
+   *
+   * @param annoType
+   *          the class of an annotation
+   * @return an immutable list of {@link RoutingPath}
+   */
+  List<RoutingPath> findByClassAnnotationType(
+      Class<? extends Annotation> annoType) {
+    return classIndex.get(annoType);
+  }
+
+  /**
+   * Returns {@link RoutingPath}s annotated by given annotation type on method
+   * level.
+   *
+   * @param annoType
+   *          the class of an annotation
+   * @return an immutable list of {@link RoutingPath}
+   */
+  List<RoutingPath> findByMethodAnnotationType(
+      Class<? extends Annotation> annoType) {
+    return methodIndex.get(annoType);
+  }
+
+  /**
+   * Returns {@link RoutingPath}s annotated by given annotation type on any
+   * parameter.
+   *
+   * @param annoType
+   *          the class of an annotation
+   * @return an immutable list of {@link RoutingPath}
+   */
+  List<RoutingPath> findByParameterAnnotationType(
+      Class<? extends Annotation> annoType) {
+    return parameterIndex.get(annoType);
+  }
+
+  /**
+   * Returns {@link RoutingPath}s annotated by given annotation type on class or
+   * method level.
+   *
+   * @param annoType
+   *          the class of an annotation
+   * @return an immutable list of {@link RoutingPath}
+   */
+  List<RoutingPath> findByAnnotationType(Class<? extends Annotation> annoType) {
+    return anyIndex.get(annoType);
+  }
+
+  private static ListMultimap<Class<?>, RoutingPath> index(
+      Collection<RoutingPath> routingPaths,
+      Function<RoutingPath, Set<Class<?>>> annotationTypes) {
+    ImmutableListMultimap.Builder<Class<?>, RoutingPath> builder =
+        ImmutableListMultimap.builder();
+    for (RoutingPath routingPath : routingPaths) {
+      for (Class<?> type : annotationTypes.apply(routingPath)) {
+        builder.put(type, routingPath);
+      }
+    }
+    return builder.build();
+  }
+
+  private static Set<Class<?>> annotationTypes(List<Annotation> annos) {
+    Set<Class<?>> types = new LinkedHashSet<>();
+    for (Annotation anno : annos) {
+      types.add(anno.annotationType());
+    }
+    return types;
+  }
+
+}
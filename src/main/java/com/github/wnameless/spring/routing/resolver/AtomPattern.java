@@ -0,0 +1,421 @@
+/*
+ *
+ * Copyright 2020 Wei-Ming Wu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+package com.github.wnameless.spring.routing.resolver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ *
+ * {@link AtomPattern} is a regex path made by {@link RoutingPathResolver}
+ * turned into a sequence of atoms. An atom is a literal code point, [^/] or .
+ * with an optional ?, * or + quantifier, and a + quantifier is expanded into an
+ * atom followed by the same atom with a * quantifier. Since PathTemplate
+ * only turns path variables into [^/]+, each + quantifier is treated as a
+ * capturing group.
+ * <p>
+ * An {@link AtomPattern} matches any range of a {@link CharSequence} exactly
+ * like {@link java.util.regex.Matcher#matches()} but without creating any
+ * object once the scratch of the thread is large enough. No recursion is
+ * used, and the work is bounded by atoms * input length, so a long request
+ * path never overflows the stack or backtracks exponentially.
+ *
+ */
+final class AtomPattern {
+
+  static final int CHAR = 0;
+  static final int NOT_SLASH = 1;
+  static final int ANY = 2;
+
+  static final int ONE = 0;
+  static final int OPTIONAL = 1;
+  static final int STAR = 2;
+
+  // the scratch of a thread is dropped if its memo is larger than 512KB
+  private static final int MAX_CACHED_WORDS = 1 << 16;
+  private static final ThreadLocal<Scratch> SCRATCH =
+      ThreadLocal.withInitial(() -> new Scratch(64, 64));
+
+  private final int[] types;
+  private final int[] codePoints;
+  private final int[] quantifiers;
+  // the group index of each atom which starts or ends a group, otherwise -1
+  private final int[] groupStarts;
+  private final int[] groupEnds;
+  private final int groupCount;
+  // the positions reachable from each position without consuming any input,
+  // only available when there are less than 64 atoms
+  private final long[] closures;
+
+  private AtomPattern(int[] types, int[] codePoints, int[] quantifiers,
+      int[] groupStarts, int[] groupEnds, int groupCount) {
+    this.types = types;
+    this.codePoints = codePoints;
+    this.quantifiers = quantifiers;
+    this.groupStarts = groupStarts;
+    this.groupEnds = groupEnds;
+    this.groupCount = groupCount;
+
+    if (types.length < Long.SIZE) {
+      closures = new long[types.length + 1];
+      for (int i = types.length; i >= 0; i--) {
+        closures[i] = 1L << i;
+        if (i < types.length && quantifiers[i] != ONE)
+          closures[i] |= closures[i + 1];
+      }
+    } else {
+      closures = null;
+    }
+  }
+
+  /**
+   * Compiles a regex path into an {@link AtomPattern}.
+   *
+   * @param regex
+   *          a regex path
+   * @return an {@link AtomPattern} or null if the regex path is not supported
+   */
+  static AtomPattern compile(String regex) {
+    List<int[]> atoms = new ArrayList<>();
+    int groupCount = 0;
+
+    int i = 0;
+    while (i < regex.length()) {
+      int type;
+      int cp = regex.codePointAt(i);
+      if (cp == '\\') {
+        if (i + 1 >= regex.length()) return null;
+        cp = regex.codePointAt(i + 1);
+        if (Character.isLetterOrDigit(cp)) return null;
+        type = CHAR;
+        i += 1 + Character.charCount(cp);
+      } else if (regex.startsWith("[^/]", i)) {
+        type = NOT_SLASH;
+        i += 4;
+      } else if (cp == '.') {
+        type = ANY;
+        i++;
+      } else if ("[](){}^$|*+?".indexOf(cp) != -1) {
+        return null;
+      } else {
+        type = CHAR;
+        i += Character.charCount(cp);
+      }
+
+      int quantifier = ONE;
+      if (i < regex.length() && "?*+".indexOf(regex.charAt(i)) != -1) {
+        char q = regex.charAt(i++);
+        if (i < regex.length() && "?*+".indexOf(regex.charAt(i)) != -1)
+          return null;
+        if (q == '+') {
+          atoms.add(new int[] { type, cp, ONE, groupCount, -1 });
+          atoms.add(new int[] { type, cp, STAR, -1, groupCount++ });
+          continue;
+        }
+        quantifier = q == '?' ? OPTIONAL : STAR;
+      }
+      atoms.add(new int[] { type, cp, quantifier, -1, -1 });
+    }
+
+    int[] types = new int[atoms.size()];
+    int[] codePoints = new int[atoms.size()];
+    int[] quantifiers = new int[atoms.size()];
+    int[] groupStarts = new int[atoms.size()];
+    int[] groupEnds = new int[atoms.size()];
+    for (int a = 0; a < atoms.size(); a++) {
+      types[a] = atoms.get(a)[0];
+      codePoints[a] = atoms.get(a)[1];
+      quantifiers[a] = atoms.get(a)[2];
+      groupStarts[a] = atoms.get(a)[3];
+      groupEnds[a] = atoms.get(a)[4];
+    }
+    return new AtomPattern(types, codePoints, quantifiers, groupStarts,
+        groupEnds, groupCount);
+  }
+
+  /**
+   * Returns the number of atoms.
+   *
+   * @return the number of atoms
+   */
+  int size() {
+    return types.length;
+  }
+
+  /**
+   * Returns the type of an atom: {@link #CHAR}, {@link #NOT_SLASH} or
+   * {@link #ANY}.
+   *
+   * @param atom
+   *          the index of an atom
+   * @return the type of the atom
+   */
+  int type(int atom) {
+    return types[atom];
+  }
+
+  /**
+   * Returns the literal code point of a {@link #CHAR} atom.
+   *
+   * @param atom
+   *          the index of an atom
+   * @return the code point of the atom
+   */
+  int codePoint(int atom) {
+    return codePoints[atom];
+  }
+
+  /**
+   * Returns the quantifier of an atom: {@link #ONE}, {@link #OPTIONAL} or
+   * {@link #STAR}.
+   *
+   * @param atom
+   *          the index of an atom
+   * @return the quantifier of the atom
+   */
+  int quantifier(int atom) {
+    return quantifiers[atom];
+  }
+
+  /**
+   * Returns the number of capturing groups.
+   *
+   * @return the number of capturing groups
+   */
+  int groupCount() {
+    return groupCount;
+  }
+
+  /**
+   * Checks if the given range of a {@link CharSequence} is fully matched.
+   *
+   * @param input
+   *          a {@link CharSequence}
+   * @param start
+   *          the start index, inclusive
+   * @param end
+   *          the end index, exclusive
+   * @return true if the range is matched, false otherwise
+   */
+  boolean matches(CharSequence input, int start, int end) {
+    if (closures == null) return backtrack(input, start, end, null);
+
+    long states = closures[0];
+    for (int i = start; i < end && states != 0;) {
+      int cp = codePointAt(input, i, end);
+      i += Character.charCount(cp);
+
+      long nextStates = 0;
+      for (long s = states; s != 0; s &= s - 1) {
+        int atom = Long.numberOfTrailingZeros(s);
+        if (atom < types.length && accepts(types[atom], codePoints[atom], cp))
+          nextStates |=
+              closures[quantifiers[atom] == STAR ? atom : atom + 1];
+      }
+      states = nextStates;
+    }
+
+    return (states & (1L << types.length)) != 0;
+  }
+
+  /**
+   * Checks if the given range of a {@link CharSequence} is fully matched and
+   * captures the groups in the same pass. The groups are captured exactly like
+   * {@link java.util.regex.Matcher#group(int)} if each + quantified atom is
+   * enclosed by parentheses.
+   *
+   * @param input
+   *          a {@link CharSequence}
+   * @param start
+   *          the start index, inclusive
+   * @param end
+   *          the end index, exclusive
+   * @param groups
+   *          to store the start and end index of each group, its length must
+   *          be at least twice of {@link #groupCount()}
+   * @return true if the range is matched, false otherwise
+   */
+  boolean matches(CharSequence input, int start, int end, int[] groups) {
+    return backtrack(input, start, end, groups);
+  }
+
+  /**
+   * Tries the atoms depth first with an explicit stack. Greedy quantifiers are
+   * tried first, the same as java.util.regex, so the captured groups are the
+   * same. Whether an atom matches the rest of the input from a position
+   * doesn't depend on how the position is reached, so every failed pair of
+   * atom and position is remembered and never tried again. The stack depth and
+   * the work are therefore bounded by atoms * (input length + 1).
+   */
+  private boolean backtrack(CharSequence input, int start, int end,
+      int[] groups) {
+    int width = end - start + 1;
+    Scratch scratch = scratch(types.length + width, types.length * width);
+    int[] atoms = scratch.atoms;
+    int[] positions = scratch.positions;
+    int[] choices = scratch.choices;
+    long[] failed = scratch.failed;
+
+    int depth = 0;
+    int atom = 0;
+    int pos = start;
+    boolean entering = true;
+    while (true) {
+      if (entering) {
+        if (atom == types.length) {
+          if (pos == end) return true;
+        } else if (!isSet(failed, atom * width + pos - start)) {
+          if (groups != null && groupStarts[atom] >= 0)
+            groups[2 * groupStarts[atom]] = pos;
+          atoms[depth] = atom;
+          positions[depth] = pos;
+          choices[depth++] = 0;
+        }
+      }
+      if (depth == 0) return false;
+
+      int top = depth - 1;
+      int a = atoms[top];
+      int p = positions[top];
+      int choice = choices[top]++;
+      boolean accepted = false;
+      int next = p;
+      if (p < end) {
+        int cp = codePointAt(input, p, end);
+        accepted = accepts(types[a], codePoints[a], cp);
+        next = p + Character.charCount(cp);
+      }
+
+      entering = true;
+      if (choice == 0 && accepted) {
+        // ONE and OPTIONAL go to the next atom, STAR repeats itself
+        atom = quantifiers[a] == STAR ? a : a + 1;
+        pos = next;
+        continue;
+      }
+      if (choice <= 1 && quantifiers[a] != ONE) {
+        choices[top] = 2;
+        if (groups != null && quantifiers[a] == STAR && groupEnds[a] >= 0)
+          groups[2 * groupEnds[a] + 1] = p;
+        atom = a + 1;
+        pos = p;
+        continue;
+      }
+
+      // all choices of the top atom failed
+      set(failed, a * width + p - start);
+      depth--;
+      entering = false;
+    }
+  }
+
+  private static Scratch scratch(int depth, int bits) {
+    int words = (bits + Long.SIZE - 1) / Long.SIZE;
+    Scratch scratch = SCRATCH.get();
+    if (scratch.atoms.length < depth || scratch.failed.length < words) {
+      scratch = new Scratch(Math.max(depth, scratch.atoms.length),
+          Math.max(words, scratch.failed.length));
+      // a huge scratch is not kept by the thread
+      if (words <= MAX_CACHED_WORDS) SCRATCH.set(scratch);
+    } else {
+      Arrays.fill(scratch.failed, 0, words, 0L);
+    }
+    return scratch;
+  }
+
+  private static boolean isSet(long[] bits, int index) {
+    return (bits[index >>> 6] & (1L << index)) != 0;
+  }
+
+  private static void set(long[] bits, int index) {
+    bits[index >>> 6] |= 1L << index;
+  }
+
+  private static final class Scratch {
+
+    final int[] atoms;
+    final int[] positions;
+    final int[] choices;
+    final long[] failed;
+
+    Scratch(int depth, int words) {
+      atoms = new int[depth];
+      positions = new int[depth];
+      choices = new int[depth];
+      failed = new long[words];
+    }
+
+  }
+
+  /**
+   * Checks if a code point is accepted by an atom.
+   *
+   * @param type
+   *          the type of an atom
+   * @param codePoint
+   *          the literal code point of an atom
+   * @param cp
+   *          the code point to be checked
+   * @return true if the code point is accepted, false otherwise
+   */
+  static boolean accepts(int type, int codePoint, int cp) {
+    switch (type) {
+      case CHAR:
+        return codePoint == cp;
+      case NOT_SLASH:
+        return cp != '/';
+      default:
+        return !isLineTerminator(cp);
+    }
+  }
+
+  /**
+   * Checks if a code point is not matched by . in a regex.
+   *
+   * @param cp
+   *          a code point
+   * @return true if the code point is a line terminator, false otherwise
+   */
+  static boolean isLineTerminator(int cp) {
+    return cp == '\n' || cp == '\r' || cp == '\u0085' || cp == 0x2028
+        || cp == 0x2029;
+  }
+
+  /**
+   * Returns the code point at given index without reading beyond the end.
+   *
+   * @param input
+   *          a {@link CharSequence}
+   * @param index
+   *          the index of the code point
+   * @param end
+   *          the end index, exclusive
+   * @return a code point
+   */
+  static int codePointAt(CharSequence input, int index, int end) {
+    char high = input.charAt(index);
+    if (Character.isHighSurrogate(high) && index + 1 < end) {
+      char low = input.charAt(index + 1);
+      if (Character.isLowSurrogate(low))
+        return Character.toCodePoint(high, low);
+    }
+    return high;
+  }
+
+}
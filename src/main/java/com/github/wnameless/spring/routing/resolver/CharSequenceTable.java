@@ -0,0 +1,170 @@
+/*
+ *
+ * Copyright 2020 Wei-Ming Wu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+package com.github.wnameless.spring.routing.resolver;
+
+import java.util.function.Function;
+
+/**
+ *
+ * {@link CharSequenceTable} is an open addressing hash table with
+ * {@link String} keys which can be looked up by any range of a
+ * {@link CharSequence} without creating a substring. It is filled before
+ * being shared and never changed afterward.
+ *
+ * @param <V>
+ *          the type of values
+ */
+final class CharSequenceTable<V> {
+
+  private String[] keys = new String[8];
+  private int[] hashes = new int[8];
+  private Object[] values = new Object[8];
+  private int size;
+
+  /**
+   * Returns the value of given key.
+   *
+   * @param key
+   *          a key
+   * @return the value or null if the key is absent
+   */
+  V get(String key) {
+    return get(key, 0, key.length());
+  }
+
+  /**
+   * Returns the value of the key which equals to the given range of a
+   * {@link CharSequence}.
+   *
+   * @param input
+   *          a {@link CharSequence}
+   * @param start
+   *          the start index, inclusive
+   * @param end
+   *          the end index, exclusive
+   * @return the value or null if the key is absent
+   */
+  @SuppressWarnings("unchecked")
+  V get(CharSequence input, int start, int end) {
+    int hash = hash(input, start, end);
+    int mask = keys.length - 1;
+    for (int i = spread(hash) & mask; keys[i] != null; i = (i + 1) & mask) {
+      if (hashes[i] == hash && regionEquals(keys[i], input, start, end))
+        return (V) values[i];
+    }
+    return null;
+  }
+
+  /**
+   * Returns the value of given key. The value is computed and put into this
+   * table if the key is absent.
+   *
+   * @param key
+   *          a key
+   * @param mappingFunction
+   *          to compute the value
+   * @return the value of the key
+   */
+  V computeIfAbsent(String key, Function<String, V> mappingFunction) {
+    V value = get(key);
+    if (value == null) {
+      value = mappingFunction.apply(key);
+      put(key, value);
+    }
+    return value;
+  }
+
+  /**
+   * Puts a key and its value into this table.
+   *
+   * @param key
+   *          a key
+   * @param value
+   *          a value
+   */
+  void put(String key, V value) {
+    if ((size + 1) * 2 > keys.length) resize();
+
+    int hash = key.hashCode();
+    int mask = keys.length - 1;
+    int i = spread(hash) & mask;
+    while (keys[i] != null) {
+      if (hashes[i] == hash && keys[i].equals(key)) {
+        values[i] = value;
+        return;
+      }
+      i = (i + 1) & mask;
+    }
+    keys[i] = key;
+    hashes[i] = hash;
+    values[i] = value;
+    size++;
+  }
+
+  private void resize() {
+    String[] oldKeys = keys;
+    Object[] oldValues = values;
+    keys = new String[oldKeys.length * 2];
+    hashes = new int[oldKeys.length * 2];
+    values = new Object[oldKeys.length * 2];
+    size = 0;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != null) {
+        @SuppressWarnings("unchecked")
+        V value = (V) oldValues[i];
+        put(oldKeys[i], value);
+      }
+    }
+  }
+
+  // the same as String#hashCode
+  private static int hash(CharSequence input, int start, int end) {
+    int hash = 0;
+    for (int i = start; i < end; i++) {
+      hash = 31 * hash + input.charAt(i);
+    }
+    return hash;
+  }
+
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+
+  /**
+   * Checks if a key equals to the given range of a {@link CharSequence}.
+   *
+   * @param key
+   *          a key
+   * @param input
+   *          a {@link CharSequence}
+   * @param start
+   *          the start index, inclusive
+   * @param end
+   *          the end index, exclusive
+   * @return true if they are equal, false otherwise
+   */
+  static boolean regionEquals(String key, CharSequence input, int start,
+      int end) {
+    if (key.length() != end - start) return false;
+    for (int i = 0; i < key.length(); i++) {
+      if (key.charAt(i) != input.charAt(start + i)) return false;
+    }
+    return true;
+  }
+
+}
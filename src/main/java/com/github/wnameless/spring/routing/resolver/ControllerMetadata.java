@@ -0,0 +1,174 @@
+/*
+ *
+ * Copyright 2020 Wei-Ming Wu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+package com.github.wnameless.spring.routing.resolver;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.core.annotation.MergedAnnotation;
+import org.springframework.core.annotation.MergedAnnotations;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ *
+ * {@link ControllerMetadata} holds the annotations of a controller class and
+ * its request mapping methods. The declared methods are read in a single pass
+ * and the mapping of each method is merged by Spring, so composed mapping
+ * annotations and {@link org.springframework.core.annotation.AliasFor} are
+ * honored.
+ * <p>
+ * It is computed once per class and shared by all {@link RoutingPathResolver}s,
+ * so a refresh or another resolver never reflects the same controller again.
+ *
+ */
+final class ControllerMetadata {
+
+  // the same order as RoutingManifestProcessor lists mapping methods, the
+  // methods with composed mapping annotations are listed last
+  private static final List<Class<? extends Annotation>> MAPPING_TYPES =
+      ImmutableList.of(RequestMapping.class, GetMapping.class,
+          PostMapping.class, DeleteMapping.class, PutMapping.class,
+          PatchMapping.class);
+
+  private static final ClassValue<ControllerMetadata> CACHE =
+      new ClassValue<ControllerMetadata>() {
+
+        @Override
+        protected ControllerMetadata computeValue(Class<?> controller) {
+          return new ControllerMetadata(controller);
+        }
+
+      };
+
+  private final List<Annotation> classAnnotations;
+  private final RequestMapping classMapping;
+  private final List<Method> mappingMethods;
+  private final ConcurrentMap<Method, MethodMetadata> methods =
+      new ConcurrentHashMap<>();
+
+  private ControllerMetadata(Class<?> controller) {
+    classAnnotations = ImmutableList.copyOf(controller.getAnnotations());
+    classMapping = toRequestMapping(
+        MergedAnnotations.from(controller).get(RequestMapping.class));
+
+    List<List<Method>> buckets = new ArrayList<>();
+    for (int i = 0; i <= MAPPING_TYPES.size(); i++) {
+      buckets.add(new ArrayList<>());
+    }
+    for (Method method : controller.getDeclaredMethods()) {
+      MergedAnnotation<RequestMapping> mapping =
+          MergedAnnotations.from(method).get(RequestMapping.class);
+      if (!mapping.isPresent()) continue;
+
+      int bucket = MAPPING_TYPES.indexOf(mapping.getRoot().getType());
+      buckets.get(bucket == -1 ? MAPPING_TYPES.size() : bucket).add(method);
+      methods.put(method, new MethodMetadata(method, mapping));
+    }
+    ImmutableList.Builder<Method> builder = ImmutableList.builder();
+    buckets.forEach(builder::addAll);
+    mappingMethods = builder.build();
+  }
+
+  /**
+   * Returns the {@link ControllerMetadata} of given controller class.
+   *
+   * @param controller
+   *          the class of a controller
+   * @return a {@link ControllerMetadata}
+   */
+  static ControllerMetadata of(Class<?> controller) {
+    return CACHE.get(controller);
+  }
+
+  /**
+   * Returns the annotations of the controller class.
+   *
+   * @return an immutable list of annotations
+   */
+  List<Annotation> getClassAnnotations() {
+    return classAnnotations;
+  }
+
+  /**
+   * Returns the merged {@link RequestMapping} of the controller class.
+   *
+   * @return a {@link RequestMapping} or null if the class is not mapped
+   */
+  RequestMapping getClassMapping() {
+    return classMapping;
+  }
+
+  /**
+   * Returns the declared methods which are mapped by any mapping annotation.
+   *
+   * @return an immutable list of {@link Method}
+   */
+  List<Method> getMappingMethods() {
+    return mappingMethods;
+  }
+
+  /**
+   * Returns the {@link MethodMetadata} of given method. The method doesn't
+   * have to be one of {@link #getMappingMethods()}, ex: a method listed by a
+   * {@link RoutingManifest} or an inherited handler method.
+   *
+   * @param method
+   *          a {@link Method}
+   * @return a {@link MethodMetadata}
+   */
+  MethodMetadata getMethod(Method method) {
+    return methods.computeIfAbsent(method, m -> new MethodMetadata(m,
+        MergedAnnotations.from(m).get(RequestMapping.class)));
+  }
+
+  private static RequestMapping toRequestMapping(
+      MergedAnnotation<RequestMapping> mapping) {
+    return mapping.isPresent() ? mapping.synthesize() : null;
+  }
+
+  /**
+   * {@link MethodMetadata} holds the annotations of a method.
+   */
+  static final class MethodMetadata {
+
+    final RequestMapping mapping;
+    final List<Annotation> methodAnnotations;
+    final List<List<Annotation>> parameterAnnotations;
+
+    private MethodMetadata(Method method,
+        MergedAnnotation<RequestMapping> mapping) {
+      this.mapping = toRequestMapping(mapping);
+      methodAnnotations = ImmutableList.copyOf(method.getAnnotations());
+      parameterAnnotations =
+          RoutingPath.copyOf(method.getParameterAnnotations());
+    }
+
+  }
+
+}
@@ -0,0 +1,107 @@
+/*
+ *
+ * Copyright 2020 Wei-Ming Wu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+package com.github.wnameless.spring.routing.resolver;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.springframework.context.ApplicationContext;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+
+/**
+ *
+ * {@link HandlerMethodRegistry} reads the handler methods which Spring MVC has
+ * already registered in its {@link RequestMappingHandlerMapping}s, so the
+ * mappings don't have to be reflected again. The paths of a
+ * {@link RequestMappingInfo} are combined with the controller mapping and the
+ * place holders are resolved.
+ * <p>
+ * It is the only class which refers to Spring MVC, so Spring MVC is not
+ * required unless it is used.
+ *
+ */
+final class HandlerMethodRegistry {
+
+  private HandlerMethodRegistry() {}
+
+  /**
+   * Reads the handler methods of all {@link RequestMappingHandlerMapping}
+   * beans grouped by their controller classes in the registration order.
+   *
+   * @param appCtx
+   *          the Spring {@link ApplicationContext}
+   * @return a map of controller classes and their {@link HandlerMapping}s
+   */
+  static Map<Class<?>, List<HandlerMapping>> read(ApplicationContext appCtx) {
+    Map<Class<?>, List<HandlerMapping>> handlerMappings =
+        new LinkedHashMap<>();
+    for (RequestMappingHandlerMapping mapping : appCtx
+        .getBeansOfType(RequestMappingHandlerMapping.class).values()) {
+      for (Entry<RequestMappingInfo, HandlerMethod> entry : mapping
+          .getHandlerMethods().entrySet()) {
+        RequestMappingInfo info = entry.getKey();
+        HandlerMethod handlerMethod = entry.getValue();
+
+        List<String> paths =
+            new ArrayList<>(info.getPatternsCondition().getPatterns());
+        if (paths.isEmpty()) paths.add("");
+        Set<RequestMethod> requestMethods =
+            info.getMethodsCondition().getMethods();
+        handlerMappings
+            .computeIfAbsent(handlerMethod.getBeanType(),
+                k -> new ArrayList<>())
+            .add(new HandlerMapping(handlerMethod.getMethod(), paths,
+                requestMethods.isEmpty() ? EnumSet.allOf(RequestMethod.class)
+                    : EnumSet.copyOf(requestMethods)));
+      }
+    }
+    return handlerMappings;
+  }
+
+  /**
+   * {@link HandlerMapping} is a handler method with its combined paths and
+   * request methods.
+   */
+  static final class HandlerMapping {
+
+    final Method method;
+    final List<String> paths;
+    final Set<RequestMethod> requestMethods;
+
+    HandlerMapping(Method method, List<String> paths,
+        Set<RequestMethod> requestMethods) {
+      this.method = method;
+      this.paths = ImmutableList.copyOf(paths);
+      this.requestMethods = Sets.immutableEnumSet(requestMethods);
+    }
+
+  }
+
+}
@@ -0,0 +1,199 @@
+/*
+ *
+ * Copyright 2020 Wei-Ming Wu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+package com.github.wnameless.spring.routing.resolver;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+/**
+ *
+ * {@link HotRouteOrdering} samples the regex path hits of each id into a
+ * {@link LongAdder}, so concurrent lookups rarely contend, and periodically
+ * republishes the most hit ids as the hot ids which are tried first. Each hot
+ * id is published with the ids which may overlap it, so a matched hot id is
+ * only checked against them instead of every candidate before it. The scores
+ * are halved on every reordering, so the hot ids follow the recent traffic.
+ * <p>
+ * The reordering runs on the given {@link Executor} and at most one at a time.
+ * A lookup only reads the published {@link HotRoutes}, which are never changed
+ * afterward, so it is never blocked by a reordering.
+ *
+ */
+final class HotRouteOrdering {
+
+  /**
+   * The maximum number of hot ids.
+   */
+  static final int HOT_LIMIT = 16;
+
+  /**
+   * One of SAMPLE_RATE hits is counted on average.
+   */
+  static final int SAMPLE_RATE = 16;
+
+  /**
+   *
+   * {@link HotRoutes} are the hot ids and the ids which may overlap each of
+   * them in ascending order. They must not be changed.
+   *
+   */
+  static final class HotRoutes {
+
+    static final HotRoutes EMPTY = new HotRoutes(new int[0], new int[0][]);
+
+    final int[] ids;
+    final int[][] overlaps;
+
+    HotRoutes(int[] ids, int[][] overlaps) {
+      this.ids = ids;
+      this.overlaps = overlaps;
+    }
+
+  }
+
+  private final LongAdder[] hits;
+  private final IntFunction<int[]> overlaps;
+  private final int sampleRate;
+  // only touched by the reordering which holds the reordering flag
+  private final long[] scores;
+  private final Map<Integer, int[]> overlapCache = new HashMap<>();
+  private final long intervalNanos;
+  private final Executor executor;
+  private final AtomicBoolean reordering = new AtomicBoolean();
+  private volatile long nextReorderTime;
+  private volatile HotRoutes hotRoutes = HotRoutes.EMPTY;
+
+  /**
+   * Creates a {@link HotRouteOrdering}.
+   *
+   * @param size
+   *          the number of ids
+   * @param overlaps
+   *          returns the ids which may overlap an id in ascending order, only
+   *          called by the reorderings
+   * @param interval
+   *          the minimum interval between two reorderings
+   * @param executor
+   *          an {@link Executor} to run the reorderings
+   */
+  HotRouteOrdering(int size, IntFunction<int[]> overlaps, Duration interval,
+      Executor executor) {
+    this(size, overlaps, interval, executor, SAMPLE_RATE);
+  }
+
+  /**
+   * Creates a {@link HotRouteOrdering} with given sample rate.
+   *
+   * @param size
+   *          the number of ids
+   * @param overlaps
+   *          returns the ids which may overlap an id in ascending order, only
+   *          called by the reorderings
+   * @param interval
+   *          the minimum interval between two reorderings
+   * @param executor
+   *          an {@link Executor} to run the reorderings
+   * @param sampleRate
+   *          one of sampleRate hits is counted on average, 1 counts all hits
+   */
+  HotRouteOrdering(int size, IntFunction<int[]> overlaps, Duration interval,
+      Executor executor, int sampleRate) {
+    hits = new LongAdder[size];
+    for (int i = 0; i < size; i++) {
+      hits[i] = new LongAdder();
+    }
+    this.overlaps = overlaps;
+    this.sampleRate = sampleRate;
+    scores = new long[size];
+    intervalNanos = interval.toNanos();
+    this.executor = executor;
+    nextReorderTime = System.nanoTime() + intervalNanos;
+  }
+
+  /**
+   * Returns the hot ids, the most hit one first, and their overlapping ids.
+   *
+   * @return {@link HotRoutes}
+   */
+  HotRoutes getHotRoutes() {
+    return hotRoutes;
+  }
+
+  /**
+   * Samples a hit of given id and schedules a reordering if it is due. It never
+   * blocks, and a rejected reordering is retried on a later hit.
+   *
+   * @param id
+   *          the hit id
+   */
+  void recordHit(int id) {
+    if (sampleRate > 1
+        && ThreadLocalRandom.current().nextInt(sampleRate) != 0)
+      return;
+
+    hits[id].increment();
+    if (System.nanoTime() - nextReorderTime < 0
+        || !reordering.compareAndSet(false, true))
+      return;
+
+    try {
+      executor.execute(this::reorderAndRelease);
+    } catch (RejectedExecutionException e) {
+      reordering.set(false);
+    }
+  }
+
+  private void reorderAndRelease() {
+    try {
+      reorder();
+    } finally {
+      nextReorderTime = System.nanoTime() + intervalNanos;
+      reordering.set(false);
+    }
+  }
+
+  /**
+   * Moves the counted hits into the scores and publishes the ids of the top
+   * scores as the new hot ids. The lower id breaks the tie. The overlapping ids
+   * of an id are computed once it is hot for the first time.
+   */
+  void reorder() {
+    for (int i = 0; i < scores.length; i++) {
+      scores[i] = scores[i] / 2 + hits[i].sumThenReset();
+    }
+    int[] ids = IntStream.range(0, scores.length).filter(i -> scores[i] > 0)
+        .boxed()
+        .sorted(Comparator.comparingLong((Integer i) -> scores[i]).reversed())
+        .limit(HOT_LIMIT).mapToInt(Integer::intValue).toArray();
+    int[][] hotOverlaps = new int[ids.length][];
+    for (int i = 0; i < ids.length; i++) {
+      hotOverlaps[i] = overlapCache.computeIfAbsent(ids[i], overlaps::apply);
+    }
+    hotRoutes = new HotRoutes(ids, hotOverlaps);
+  }
+
+}
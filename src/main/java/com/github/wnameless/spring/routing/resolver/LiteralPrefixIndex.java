@@ -0,0 +1,100 @@
+/*
+ *
+ * Copyright 2020 Wei-Ming Wu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+package com.github.wnameless.spring.routing.resolver;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ *
+ * {@link LiteralPrefixIndex} indexes ids by the literal prefixes of their
+ * paths, so the ids whose prefix starts a request path are collected without
+ * trying any regex path. The prefixes are grouped by length: the sorted
+ * distinct lengths are probed one by one and each probe is a single lookup of
+ * a {@link CharSequenceTable}, no matter how many prefixes share the length.
+ * It is filled before being shared and never changed afterward.
+ *
+ */
+final class LiteralPrefixIndex {
+
+  private final CharSequenceTable<int[]> prefixes = new CharSequenceTable<>();
+  private int[] lengths = new int[0];
+
+  /**
+   * Adds an id by its literal prefix.
+   *
+   * @param prefix
+   *          a literal prefix, every request path is matched by an empty one
+   * @param id
+   *          an id
+   */
+  void add(String prefix, int id) {
+    int[] ids = prefixes.get(prefix);
+    if (ids == null) {
+      ids = new int[] { id };
+      int i = Arrays.binarySearch(lengths, prefix.length());
+      if (i < 0) {
+        i = -i - 1;
+        int[] newLengths = new int[lengths.length + 1];
+        System.arraycopy(lengths, 0, newLengths, 0, i);
+        newLengths[i] = prefix.length();
+        System.arraycopy(lengths, i, newLengths, i + 1, lengths.length - i);
+        lengths = newLengths;
+      }
+    } else {
+      ids = Arrays.copyOf(ids, ids.length + 1);
+      ids[ids.length - 1] = id;
+    }
+    prefixes.put(prefix, ids);
+  }
+
+  /**
+   * Checks if there is no id.
+   *
+   * @return true if there is no id, false otherwise
+   */
+  boolean isEmpty() {
+    return lengths.length == 0;
+  }
+
+  /**
+   * Collects the ids whose prefix starts the given range of a request path
+   * without creating any object.
+   *
+   * @param requestPath
+   *          a request path
+   * @param start
+   *          the start index, inclusive
+   * @param end
+   *          the end index, exclusive
+   * @param candidates
+   *          to store the collected ids
+   */
+  void collect(CharSequence requestPath, int start, int end,
+      BitSet candidates) {
+    for (int length : lengths) {
+      if (start + length > end) return;
+      int[] ids = prefixes.get(requestPath, start, start + length);
+      if (ids == null) continue;
+      for (int id : ids) {
+        candidates.set(id);
+      }
+    }
+  }
+
+}
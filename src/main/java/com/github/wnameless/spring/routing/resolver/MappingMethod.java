@@ -0,0 +1,165 @@
+/*
+ *
+ * Copyright 2020 Wei-Ming Wu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+package com.github.wnameless.spring.routing.resolver;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Objects;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * 
+ * {@link MappingMethod} identifies a request mapping method of a controller by
+ * names only, so it can be written into a {@link RoutingManifest} at compile
+ * time. It is an immutable class.
+ *
+ */
+public final class MappingMethod {
+
+  private static final ImmutableMap<String, Class<?>> PRIMITIVES =
+      ImmutableMap.<String, Class<?>>builder().put("boolean", boolean.class)
+          .put("byte", byte.class).put("char", char.class)
+          .put("short", short.class).put("int", int.class)
+          .put("long", long.class).put("float", float.class)
+          .put("double", double.class).build();
+
+  private final String className;
+  private final String methodName;
+  private final List<String> parameterTypeNames;
+
+  /**
+   * Creates a {@link MappingMethod}.
+   * 
+   * @param className
+   *          the binary name of the controller class, ex:
+   *          com.example.Outer$Inner
+   * @param methodName
+   *          the name of the method
+   * @param parameterTypeNames
+   *          the binary names of the erased parameter types, ex: int,
+   *          java.lang.String[]
+   */
+  public MappingMethod(String className, String methodName,
+      String... parameterTypeNames) {
+    this.className = checkNotNull(className);
+    this.methodName = checkNotNull(methodName);
+    this.parameterTypeNames = ImmutableList.copyOf(parameterTypeNames);
+  }
+
+  /**
+   * Returns the binary name of the controller class.
+   * 
+   * @return a class name
+   */
+  public String getClassName() {
+    return className;
+  }
+
+  /**
+   * Returns the name of the method.
+   * 
+   * @return a method name
+   */
+  public String getMethodName() {
+    return methodName;
+  }
+
+  /**
+   * Returns the binary names of the erased parameter types.
+   * 
+   * @return an immutable list of type names
+   */
+  public List<String> getParameterTypeNames() {
+    return parameterTypeNames;
+  }
+
+  /**
+   * Looks up the declared {@link Method} of given controller class.
+   * 
+   * @param controller
+   *          the controller class
+   * @return a {@link Method}
+   * @throws IllegalStateException
+   *           if the method doesn't exist, the manifest may be stale
+   */
+  Method toMethod(Class<?> controller) {
+    try {
+      Class<?>[] parameterTypes = new Class<?>[parameterTypeNames.size()];
+      for (int i = 0; i < parameterTypes.length; i++) {
+        parameterTypes[i] = toClass(parameterTypeNames.get(i),
+            controller.getClassLoader());
+      }
+      return controller.getDeclaredMethod(methodName, parameterTypes);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Mapping method not found: " + this, e);
+    }
+  }
+
+  /**
+   * Loads a class by its binary name or the name of a primitive or array type.
+   * 
+   * @param typeName
+   *          a type name
+   * @param classLoader
+   *          the {@link ClassLoader} to load the class
+   * @return a {@link Class}
+   * @throws ClassNotFoundException
+   *           if the class is not found
+   */
+  static Class<?> toClass(String typeName, ClassLoader classLoader)
+      throws ClassNotFoundException {
+    if (typeName.endsWith("[]")) {
+      Class<?> component = toClass(
+          typeName.substring(0, typeName.length() - 2), classLoader);
+      return Array.newInstance(component, 0).getClass();
+    }
+
+    Class<?> primitive = PRIMITIVES.get(typeName);
+    return primitive != null ? primitive
+        : Class.forName(typeName, false, classLoader);
+  }
+
+  @Override
+  public boolean equals(final Object other) {
+    if (this == other) return true;
+    if (!(other instanceof MappingMethod)) return false;
+    MappingMethod castOther = (MappingMethod) other;
+    return Objects.equals(className, castOther.className)
+        && Objects.equals(methodName, castOther.methodName)
+        && Objects.equals(parameterTypeNames, castOther.parameterTypeNames);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(className, methodName, parameterTypeNames);
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this).add("className", className)
+        .add("methodName", methodName)
+        .add("parameterTypeNames", parameterTypeNames).toString();
+  }
+
+}
@@ -0,0 +1,123 @@
+/*
+ *
+ * Copyright 2020 Wei-Ming Wu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+package com.github.wnameless.spring.routing.resolver;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.web.bind.annotation.RequestMethod;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ *
+ * {@link MicrometerRoutingMetrics} is a {@link RoutingMetrics} which records
+ * the measurements of a {@link RoutingPathResolver} into a Micrometer
+ * {@link MeterRegistry}. Micrometer is an optional dependency, it is only
+ * required if this class is used.
+ * <p>
+ * The meters are:
+ * <ul>
+ * <li>routing.resolver.build: a timer tagged by phase</li>
+ * <li>routing.resolver.routes: a gauge of routing paths tagged by method</li>
+ * <li>routing.resolver.lookup: a timer with a percentile histogram tagged by
+ * lookup and result, its count is the number of hits or misses</li>
+ * </ul>
+ * Measurements before {@link #bindTo(MeterRegistry)} are ignored, so it should
+ * be bound before the {@link RoutingPathResolver} is created.
+ *
+ */
+public final class MicrometerRoutingMetrics
+    implements RoutingMetrics, MeterBinder {
+
+  private final Map<RequestMethod, AtomicInteger> routeCounts =
+      new EnumMap<>(RequestMethod.class);
+  private volatile Timer[] buildTimers;
+  // indexed by lookup and then result
+  private volatile Timer[][] lookupTimers;
+
+  /**
+   * Creates a {@link MicrometerRoutingMetrics}.
+   */
+  public MicrometerRoutingMetrics() {
+    for (RequestMethod method : RequestMethod.values()) {
+      routeCounts.put(method, new AtomicInteger());
+    }
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    routeCounts.forEach((method, count) -> Gauge
+        .builder("routing.resolver.routes", count, AtomicInteger::get)
+        .description("The number of routing paths")
+        .tag("method", method.name()).register(registry));
+
+    Timer[] build = new Timer[BuildPhase.values().length];
+    for (BuildPhase phase : BuildPhase.values()) {
+      build[phase.ordinal()] = Timer.builder("routing.resolver.build")
+          .description("The time spent on building the routing paths")
+          .tag("phase", tagValue(phase)).register(registry);
+    }
+
+    Timer[][] lookup =
+        new Timer[Lookup.values().length][LookupResult.values().length];
+    for (Lookup l : Lookup.values()) {
+      for (LookupResult result : LookupResult.values()) {
+        lookup[l.ordinal()][result.ordinal()] =
+            Timer.builder("routing.resolver.lookup")
+                .description("The time spent on finding routing paths")
+                .tag("lookup", tagValue(l)).tag("result", tagValue(result))
+                .publishPercentileHistogram().register(registry);
+      }
+    }
+
+    buildTimers = build;
+    lookupTimers = lookup;
+  }
+
+  @Override
+  public void recordBuildPhase(BuildPhase phase, long nanos) {
+    Timer[] timers = buildTimers;
+    if (timers != null)
+      timers[phase.ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public void recordRouteCounts(Map<RequestMethod, Integer> routeCounts) {
+    this.routeCounts.forEach((method, count) -> count
+        .set(routeCounts.getOrDefault(method, 0)));
+  }
+
+  @Override
+  public void recordLookup(Lookup lookup, LookupResult result, long nanos) {
+    Timer[][] timers = lookupTimers;
+    if (timers != null) timers[lookup.ordinal()][result.ordinal()]
+        .record(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  private static String tagValue(Enum<?> constant) {
+    return constant.name().toLowerCase(Locale.ROOT);
+  }
+
+}
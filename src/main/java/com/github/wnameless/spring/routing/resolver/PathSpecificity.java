@@ -0,0 +1,112 @@
+/*
+ *
+ * Copyright 2020 Wei-Ming Wu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+package com.github.wnameless.spring.routing.resolver;
+
+import com.google.common.collect.ComparisonChain;
+
+/**
+ *
+ * {@link PathSpecificity} ranks a path by how specific it is, similar to the
+ * AntPatternComparator of Spring. A smaller {@link PathSpecificity} is more
+ * specific.
+ * <ol>
+ * <li>the catch-all path "/**" is the least specific</li>
+ * <li>paths without "**" are more specific</li>
+ * <li>fewer path variables and wildcards ("**" counts twice)</li>
+ * <li>more literal segments</li>
+ * <li>longer path, a path variable counts as one character</li>
+ * <li>fewer single wildcards</li>
+ * <li>fewer path variables</li>
+ * </ol>
+ *
+ */
+final class PathSpecificity implements Comparable<PathSpecificity> {
+
+  private final boolean catchAll;
+  private final int uriVars;
+  private final int singleWildcards;
+  private final int doubleWildcards;
+  private final int literalSegments;
+  private final int length;
+
+  /**
+   * Creates a {@link PathSpecificity}.
+   *
+   * @param path
+   *          a path
+   */
+  PathSpecificity(String path) {
+    catchAll = path.equals("/**") || path.equals("**");
+
+    int vars = 0;
+    int singles = 0;
+    int doubles = 0;
+    int literals = 0;
+    int len = 0;
+    boolean literalSegment = true;
+    for (int i = 0; i < path.length(); i++) {
+      char c = path.charAt(i);
+      int end;
+      if (c == '{' && (end = path.indexOf('}', i + 1)) > i + 1) {
+        vars++;
+        literalSegment = false;
+        i = end;
+      } else if (c == '*') {
+        if (i + 1 < path.length() && path.charAt(i + 1) == '*') {
+          doubles++;
+          len++;
+          i++;
+        } else {
+          singles++;
+        }
+        literalSegment = false;
+      } else if (c == '?') {
+        literalSegment = false;
+      } else if (c == '/') {
+        if (i > 0 && literalSegment) literals++;
+        literalSegment = true;
+      }
+      len++;
+    }
+    if (path.length() > 0 && !path.endsWith("/") && literalSegment)
+      literals++;
+
+    uriVars = vars;
+    singleWildcards = singles;
+    doubleWildcards = doubles;
+    literalSegments = literals;
+    length = len;
+  }
+
+  @Override
+  public int compareTo(PathSpecificity other) {
+    return ComparisonChain.start()
+        .compareFalseFirst(catchAll, other.catchAll)
+        .compareFalseFirst(doubleWildcards > 0, other.doubleWildcards > 0)
+        .compare(getTotalCount(), other.getTotalCount())
+        .compare(other.literalSegments, literalSegments)
+        .compare(other.length, length)
+        .compare(singleWildcards, other.singleWildcards)
+        .compare(uriVars, other.uriVars).result();
+  }
+
+  private int getTotalCount() {
+    return uriVars + singleWildcards + (2 * doubleWildcards);
+  }
+
+}
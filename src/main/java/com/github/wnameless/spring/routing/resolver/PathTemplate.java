@@ -0,0 +1,394 @@
+/*
+ *
+ * Copyright 2020 Wei-Ming Wu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+package com.github.wnameless.spring.routing.resolver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiFunction;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ *
+ * {@link PathTemplate} is a path of a RequestMapping tokenized in one pass
+ * into literals, path variables ({var} or {var:regex}), wildcards (*, **
+ * and ?) and place holders (${key} or ${key:default}). The regex path, the
+ * resolved path and the path variable names are all computed from the tokens
+ * without any further scanning.
+ * <p>
+ * A token is recognized at the leftmost position it starts, a place holder
+ * before a path variable and ** before *. A { without a matching } is a literal
+ * character.
+ *
+ */
+final class PathTemplate {
+
+  /**
+   * The kinds of {@link Token}.
+   */
+  enum Kind {
+    LITERAL, VARIABLE, WILDCARD, DOUBLE_WILDCARD, ANY_CHAR, PLACEHOLDER
+  }
+
+  /**
+   *
+   * {@link Token} is a piece of a {@link PathTemplate}.
+   *
+   */
+  static final class Token {
+
+    final Kind kind;
+    final String text;
+    // the variable name or the place holder key, otherwise null
+    final String name;
+
+    private Token(Kind kind, String text, String name) {
+      this.kind = kind;
+      this.text = text;
+      this.name = name;
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this).add("kind", kind)
+          .add("text", text).toString();
+    }
+
+  }
+
+  /**
+   *
+   * {@link Segment} is the shape of a segment between two slashes.
+   *
+   */
+  private static final class Segment {
+
+    // the literal text before the first and after the last wildcard
+    final String prefix;
+    final String suffix;
+    final boolean literal;
+    // true if no literal text or path variable is in the segment
+    final boolean mayBeEmpty;
+
+    Segment(String prefix, String suffix, boolean literal,
+        boolean mayBeEmpty) {
+      this.prefix = prefix;
+      this.suffix = suffix;
+      this.literal = literal;
+      this.mayBeEmpty = mayBeEmpty;
+    }
+
+    boolean mayOverlap(Segment other) {
+      if (literal && other.literal) return prefix.equals(other.prefix);
+      return (prefix.startsWith(other.prefix)
+          || other.prefix.startsWith(prefix))
+          && (suffix.endsWith(other.suffix) || other.suffix.endsWith(suffix));
+    }
+
+  }
+
+  private static final String REGEX_SPECIAL_CHARACTERS = "\\[.]{}()*+-?^$|";
+
+  private final String template;
+  private final List<Token> tokens;
+  private final boolean placeholders;
+  // null if the segments of a matched request path are unknown
+  private final List<Segment> segments;
+
+  private PathTemplate(String template, List<Token> tokens) {
+    this.template = template;
+    this.tokens = Collections.unmodifiableList(tokens);
+    placeholders =
+        tokens.stream().anyMatch(token -> token.kind == Kind.PLACEHOLDER);
+    segments = computeSegments(template, tokens);
+  }
+
+  /**
+   * Tokenizes a path.
+   *
+   * @param template
+   *          a path
+   * @return a {@link PathTemplate}
+   */
+  static PathTemplate parse(String template) {
+    List<Token> tokens = new ArrayList<>();
+    int literalStart = 0;
+    int i = 0;
+    while (i < template.length()) {
+      char c = template.charAt(i);
+      int end;
+      Token token;
+      if (c == '$' && template.startsWith("{", i + 1)
+          && (end = template.indexOf('}', i + 2)) > i + 2) {
+        String placeholder = template.substring(i + 2, end);
+        token = new Token(Kind.PLACEHOLDER, template.substring(i, end + 1),
+            placeholder);
+        end++;
+      } else if (c == '{' && (end = template.indexOf('}', i + 1)) > i + 1) {
+        String variable = template.substring(i + 1, end);
+        int colon = variable.indexOf(':');
+        token = new Token(Kind.VARIABLE, template.substring(i, end + 1),
+            (colon == -1 ? variable : variable.substring(0, colon)).trim());
+        end++;
+      } else if (c == '*' && template.startsWith("*", i + 1)) {
+        token = new Token(Kind.DOUBLE_WILDCARD, "**", null);
+        end = i + 2;
+      } else if (c == '*') {
+        token = new Token(Kind.WILDCARD, "*", null);
+        end = i + 1;
+      } else if (c == '?') {
+        token = new Token(Kind.ANY_CHAR, "?", null);
+        end = i + 1;
+      } else {
+        i++;
+        continue;
+      }
+
+      if (literalStart < i) tokens.add(new Token(Kind.LITERAL,
+          template.substring(literalStart, i), null));
+      tokens.add(token);
+      literalStart = i = end;
+    }
+    if (literalStart < template.length()) tokens.add(
+        new Token(Kind.LITERAL, template.substring(literalStart), null));
+
+    return new PathTemplate(template, tokens);
+  }
+
+  /**
+   * Returns the path of this {@link PathTemplate}.
+   *
+   * @return a path
+   */
+  String getTemplate() {
+    return template;
+  }
+
+  /**
+   * Returns the tokens of this {@link PathTemplate}.
+   *
+   * @return an unmodifiable list of {@link Token}
+   */
+  List<Token> getTokens() {
+    return tokens;
+  }
+
+  /**
+   * Checks if there is any place holder.
+   *
+   * @return true if there is any place holder, false otherwise
+   */
+  boolean hasPlaceholders() {
+    return placeholders;
+  }
+
+  /**
+   * Resolves all place holders by given property source. A place holder is
+   * split by : into a key and a default value, which is an empty string if
+   * absent. The resolved values are inserted literally and then tokenized
+   * together with the rest of the path, so a resolved value can still contain
+   * wildcards or path variables.
+   *
+   * @param properties
+   *          returns the property of a key, or the given default value if the
+   *          key is absent, ex: Environment#getProperty(String, String)
+   * @return this {@link PathTemplate} if there is no place holder, otherwise
+   *         a new {@link PathTemplate} of the resolved path
+   */
+  PathTemplate resolve(BiFunction<String, String, String> properties) {
+    if (!placeholders) return this;
+
+    StringBuilder path = new StringBuilder(template.length());
+    for (Token token : tokens) {
+      if (token.kind == Kind.PLACEHOLDER) {
+        String[] keyAndDefault = token.name.split(":");
+        path.append(properties.apply(keyAndDefault[0],
+            keyAndDefault.length > 1 ? keyAndDefault[1] : ""));
+      } else {
+        path.append(token.text);
+      }
+    }
+    return parse(path.toString());
+  }
+
+  /**
+   * Returns the regex path of this {@link PathTemplate}. Regex special
+   * characters of literals are escaped, a path variable becomes [^/]+, **
+   * becomes .*, * becomes [^/]* and ? becomes . so the path variables are the
+   * only + quantifiers. The first slash can be omitted and the last slash is
+   * optional unless the path ends with a slash. An unresolved place holder
+   * becomes $[^/]+ which never matches.
+   *
+   * @return a regex path
+   */
+  String toRegex() {
+    StringBuilder regex = new StringBuilder(template.length() + 16);
+    for (Token token : tokens) {
+      switch (token.kind) {
+        case LITERAL:
+          for (int i = 0; i < token.text.length(); i++) {
+            char c = token.text.charAt(i);
+            if (REGEX_SPECIAL_CHARACTERS.indexOf(c) != -1) regex.append('\\');
+            regex.append(c);
+          }
+          break;
+        case VARIABLE:
+          regex.append("[^/]+");
+          break;
+        case PLACEHOLDER:
+          regex.append("$[^/]+");
+          break;
+        case DOUBLE_WILDCARD:
+          regex.append(".*");
+          break;
+        case WILDCARD:
+          regex.append("[^/]*");
+          break;
+        default:
+          regex.append('.');
+      }
+    }
+
+    // the first slash of an URL can be omitted
+    if (regex.length() > 0 && regex.charAt(0) == '/') {
+      regex.insert(1, '?');
+    } else {
+      regex.insert(0, "/?");
+    }
+    // the last slash of an URL is optional if user not mentions
+    if (regex.charAt(regex.length() - 1) != '/') regex.append("/?");
+
+    return regex.toString();
+  }
+
+  /**
+   * Returns the literal text before the first path variable, wildcard or place
+   * holder, which every request path matched by the regex path starts with,
+   * apart from the optional first slash.
+   *
+   * @return the literal prefix, an empty string if the path doesn't start with
+   *         a literal
+   */
+  String getLiteralPrefix() {
+    return !tokens.isEmpty() && tokens.get(0).kind == Kind.LITERAL
+        ? tokens.get(0).text : "";
+  }
+
+  /**
+   * Returns the path variable names in order, which are also the capturing
+   * groups of the regex path if each [^/]+ is enclosed by parentheses.
+   *
+   * @return an array of path variable names
+   */
+  String[] getVariableNames() {
+    return tokens.stream().filter(token -> token.kind == Kind.VARIABLE)
+        .map(token -> token.name).toArray(String[]::new);
+  }
+
+  /**
+   * Checks if any request path may be matched by both regex paths of this and
+   * the other {@link PathTemplate}. It is conservative: false means no request
+   * path can be matched by both, while true only means they can't be told
+   * apart by their segments. A path with **, ? or a place holder may overlap
+   * any path.
+   *
+   * @param other
+   *          a {@link PathTemplate}
+   * @return false if no request path is matched by both regex paths
+   */
+  boolean mayOverlap(PathTemplate other) {
+    if (segments == null || other.segments == null) return true;
+
+    List<Segment> shorter = segments;
+    List<Segment> longer = other.segments;
+    if (shorter.size() > longer.size()) {
+      shorter = other.segments;
+      longer = segments;
+    }
+    // the last slash is optional, so an empty last segment may be omitted
+    if (longer.size() - shorter.size() > 1 || (longer.size() > shorter.size()
+        && !longer.get(longer.size() - 1).mayBeEmpty))
+      return false;
+    for (int i = 0; i < shorter.size(); i++) {
+      if (!shorter.get(i).mayOverlap(longer.get(i))) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Splits the tokens into the segments of a matched request path without its
+   * optional first and last slash.
+   *
+   * @return a list of {@link Segment} or null if any token may match a slash,
+   *         or the first segment may be empty, which can be confused with the
+   *         optional first slash
+   */
+  private static List<Segment> computeSegments(String template,
+      List<Token> tokens) {
+    List<Segment> segments = new ArrayList<>();
+    StringBuilder prefix = new StringBuilder();
+    StringBuilder suffix = new StringBuilder();
+    boolean literal = true;
+    boolean mayBeEmpty = true;
+    for (Token token : tokens) {
+      switch (token.kind) {
+        case LITERAL:
+          for (int i = 0; i < token.text.length(); i++) {
+            char c = token.text.charAt(i);
+            if (c == '/') {
+              segments.add(new Segment(prefix.toString(), suffix.toString(),
+                  literal, mayBeEmpty));
+              prefix.setLength(0);
+              suffix.setLength(0);
+              literal = mayBeEmpty = true;
+            } else {
+              if (literal) prefix.append(c);
+              suffix.append(c);
+              mayBeEmpty = false;
+            }
+          }
+          break;
+        case VARIABLE:
+          mayBeEmpty = false;
+          // falls through
+        case WILDCARD:
+          literal = false;
+          suffix.setLength(0);
+          break;
+        default:
+          return null;
+      }
+    }
+    segments.add(new Segment(prefix.toString(), suffix.toString(), literal,
+        mayBeEmpty));
+
+    if (template.startsWith("/")) segments.remove(0);
+    if (template.endsWith("/") && !segments.isEmpty())
+      segments.remove(segments.size() - 1);
+    if (!segments.isEmpty() && segments.get(0).mayBeEmpty) return null;
+    return segments;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this).add("template", template)
+        .add("tokens", tokens).toString();
+  }
+
+}
@@ -0,0 +1,375 @@
+/*
+ *
+ * Copyright 2020 Wei-Ming Wu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+package com.github.wnameless.spring.routing.resolver;
+
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ *
+ * {@link RequestPathNormalizer} normalizes a request path before it is looked
+ * up by a {@link RoutingPathResolver}. All steps are done in one pass over the
+ * input:
+ * <ol>
+ * <li>matrix parameters are stripped, ex: /a;jsessionid=1/b to /a/b</li>
+ * <li>percent-encoded UTF-8 characters are decoded, ex: /a%20b to /a b</li>
+ * <li>duplicate slashes are collapsed, ex: /a//b to /a/b</li>
+ * <li>. and .. segments are removed, ex: /a/./b/../c to /a/c</li>
+ * <li>the trailing slash is removed, ex: /a/b/ to /a/b</li>
+ * </ol>
+ * Matrix parameters are stripped before decoding. The encoded characters
+ * which would form separators or new escapes, %2F (/), %5C (\), %2E (.),
+ * %3B (;) and %25 (%), are never decoded, so an encoded separator can't form
+ * a new segment or dot segment and normalizing a normalized path changes
+ * nothing. Nothing is copied until the first change, and the original
+ * instance is returned if nothing changes.
+ * <p>
+ * It is an immutable class, every <i>with</i> method returns a new copy.
+ *
+ */
+public final class RequestPathNormalizer {
+
+  private static final RequestPathNormalizer DEFAULTS =
+      new RequestPathNormalizer(true, true, true, true, true);
+
+  private static final String RESERVED_BYTES = "/\\.;%";
+
+  private final boolean decoding;
+  private final boolean slashCollapsing;
+  private final boolean matrixParameterStripping;
+  private final boolean dotSegmentRemoval;
+  private final boolean trailingSlashRemoval;
+
+  private RequestPathNormalizer(boolean decoding, boolean slashCollapsing,
+      boolean matrixParameterStripping, boolean dotSegmentRemoval,
+      boolean trailingSlashRemoval) {
+    this.decoding = decoding;
+    this.slashCollapsing = slashCollapsing;
+    this.matrixParameterStripping = matrixParameterStripping;
+    this.dotSegmentRemoval = dotSegmentRemoval;
+    this.trailingSlashRemoval = trailingSlashRemoval;
+  }
+
+  /**
+   * Returns the default {@link RequestPathNormalizer} which enables all steps.
+   *
+   * @return the default {@link RequestPathNormalizer}
+   */
+  public static RequestPathNormalizer defaults() {
+    return DEFAULTS;
+  }
+
+  /**
+   * Returns a copy of this normalizer which decodes percent-encoded UTF-8
+   * characters or not. An invalid percent-encoding and the encoded characters
+   * which would form separators or new escapes are kept as they are.
+   *
+   * @param decoding
+   *          true if percent-encoded characters are decoded
+   * @return a new {@link RequestPathNormalizer}
+   */
+  public RequestPathNormalizer withDecoding(boolean decoding) {
+    return new RequestPathNormalizer(decoding, slashCollapsing,
+        matrixParameterStripping, dotSegmentRemoval, trailingSlashRemoval);
+  }
+
+  /**
+   * Checks if percent-encoded characters are decoded.
+   *
+   * @return true if percent-encoded characters are decoded, false otherwise
+   */
+  public boolean isDecodingEnabled() {
+    return decoding;
+  }
+
+  /**
+   * Returns a copy of this normalizer which collapses duplicate slashes or not.
+   *
+   * @param slashCollapsing
+   *          true if duplicate slashes are collapsed
+   * @return a new {@link RequestPathNormalizer}
+   */
+  public RequestPathNormalizer withSlashCollapsing(boolean slashCollapsing) {
+    return new RequestPathNormalizer(decoding, slashCollapsing,
+        matrixParameterStripping, dotSegmentRemoval, trailingSlashRemoval);
+  }
+
+  /**
+   * Checks if duplicate slashes are collapsed.
+   *
+   * @return true if duplicate slashes are collapsed, false otherwise
+   */
+  public boolean isSlashCollapsingEnabled() {
+    return slashCollapsing;
+  }
+
+  /**
+   * Returns a copy of this normalizer which strips matrix parameters or not. A
+   * matrix parameter starts with ; and ends before the next slash, ex:
+   * ;jsessionid=1.
+   *
+   * @param matrixParameterStripping
+   *          true if matrix parameters are stripped
+   * @return a new {@link RequestPathNormalizer}
+   */
+  public RequestPathNormalizer withMatrixParameterStripping(
+      boolean matrixParameterStripping) {
+    return new RequestPathNormalizer(decoding, slashCollapsing,
+        matrixParameterStripping, dotSegmentRemoval, trailingSlashRemoval);
+  }
+
+  /**
+   * Checks if matrix parameters are stripped.
+   *
+   * @return true if matrix parameters are stripped, false otherwise
+   */
+  public boolean isMatrixParameterStrippingEnabled() {
+    return matrixParameterStripping;
+  }
+
+  /**
+   * Returns a copy of this normalizer which removes . and .. segments or not.
+   * A .. segment also removes its previous segment, but never the leading
+   * slash.
+   *
+   * @param dotSegmentRemoval
+   *          true if . and .. segments are removed
+   * @return a new {@link RequestPathNormalizer}
+   */
+  public RequestPathNormalizer withDotSegmentRemoval(
+      boolean dotSegmentRemoval) {
+    return new RequestPathNormalizer(decoding, slashCollapsing,
+        matrixParameterStripping, dotSegmentRemoval, trailingSlashRemoval);
+  }
+
+  /**
+   * Checks if . and .. segments are removed.
+   *
+   * @return true if . and .. segments are removed, false otherwise
+   */
+  public boolean isDotSegmentRemovalEnabled() {
+    return dotSegmentRemoval;
+  }
+
+  /**
+   * Returns a copy of this normalizer which removes the trailing slash or not.
+   * The root path / is kept.
+   *
+   * @param trailingSlashRemoval
+   *          true if the trailing slash is removed
+   * @return a new {@link RequestPathNormalizer}
+   */
+  public RequestPathNormalizer withTrailingSlashRemoval(
+      boolean trailingSlashRemoval) {
+    return new RequestPathNormalizer(decoding, slashCollapsing,
+        matrixParameterStripping, dotSegmentRemoval, trailingSlashRemoval);
+  }
+
+  /**
+   * Checks if the trailing slash is removed.
+   *
+   * @return true if the trailing slash is removed, false otherwise
+   */
+  public boolean isTrailingSlashRemovalEnabled() {
+    return trailingSlashRemoval;
+  }
+
+  /**
+   * Normalizes a request path.
+   *
+   * @param requestPath
+   *          a request path
+   * @return the normalized request path, the same instance if nothing changes
+   */
+  public String normalize(String requestPath) {
+    CharSequence path =
+        normalize(requestPath, 0, requestPath.length(), decoding,
+            matrixParameterStripping);
+    return path == requestPath ? requestPath : path.toString();
+  }
+
+  /**
+   * Normalizes the given range of a request path.
+   *
+   * @param requestPath
+   *          a request path
+   * @param start
+   *          the start index, inclusive
+   * @param end
+   *          the end index, exclusive
+   * @return the given {@link CharSequence} if nothing changes, so the same
+   *         range stays normalized, otherwise a new {@link String} of the
+   *         normalized range
+   */
+  public CharSequence normalize(CharSequence requestPath, int start,
+      int end) {
+    checkPositionIndexes(start, end, requestPath.length());
+    return normalize(requestPath, start, end, decoding,
+        matrixParameterStripping);
+  }
+
+  /**
+   * Normalizes the path of a {@link RoutingPath} in the same way as a request
+   * path, so they can be compared directly. A path is never decoded and ; is
+   * kept, because it may be part of a path variable regex.
+   *
+   * @param path
+   *          the path of a {@link RoutingPath}
+   * @return the normalized path, the same instance if nothing changes
+   */
+  String normalizePath(String path) {
+    CharSequence normalized =
+        normalize(path, 0, path.length(), false, false);
+    return normalized == path ? path : normalized.toString();
+  }
+
+  private CharSequence normalize(CharSequence input, int start, int end,
+      boolean decode, boolean stripMatrix) {
+    // the output is input[start, start + length) until it is copied into out
+    StringBuilder out = null;
+    int length = 0;
+
+    int i = start;
+    while (i < end) {
+      char c = input.charAt(i);
+      if (c == ';' && stripMatrix) {
+        if (out == null) out = copy(input, start, length, end);
+        while (i < end && input.charAt(i) != '/') {
+          i++;
+        }
+      } else if (c == '%' && decode && isDecodable(input, i, end)) {
+        if (out == null) out = copy(input, start, length, end);
+        i = decode(input, i, end, out);
+      } else if (c == '/' && dotSegmentRemoval
+          && dotSegment(input, start, length, out) != 0) {
+        if (out == null) out = copy(input, start, length, end);
+        removeDotSegment(out);
+        // the slash before the dot segment is kept
+        i++;
+      } else if (c == '/' && slashCollapsing && length(length, out) > 0
+          && charAt(input, start, out, length(length, out) - 1) == '/') {
+        if (out == null) out = copy(input, start, length, end);
+        i++;
+      } else {
+        if (out == null) {
+          length++;
+        } else {
+          out.append(c);
+        }
+        i++;
+      }
+    }
+
+    if (dotSegmentRemoval && dotSegment(input, start, length, out) != 0) {
+      if (out == null) out = copy(input, start, length, end);
+      removeDotSegment(out);
+    }
+    if (trailingSlashRemoval && length(length, out) > 1
+        && charAt(input, start, out, length(length, out) - 1) == '/') {
+      if (out == null) out = copy(input, start, length, end);
+      out.setLength(out.length() - 1);
+    }
+
+    return out == null ? input : out.toString();
+  }
+
+  private static StringBuilder copy(CharSequence input, int start, int length,
+      int end) {
+    return new StringBuilder(end - start).append(input, start,
+        start + length);
+  }
+
+  private static int length(int length, StringBuilder out) {
+    return out == null ? length : out.length();
+  }
+
+  private static char charAt(CharSequence input, int start, StringBuilder out,
+      int index) {
+    return out == null ? input.charAt(start + index) : out.charAt(index);
+  }
+
+  /**
+   * Checks if the last segment of the output is . or ..
+   *
+   * @return 1 if it is ., 2 if it is .., otherwise 0
+   */
+  private static int dotSegment(CharSequence input, int start, int length,
+      StringBuilder out) {
+    int len = length(length, out);
+    int dots = 0;
+    while (dots < 2 && dots < len
+        && charAt(input, start, out, len - 1 - dots) == '.') {
+      dots++;
+    }
+    if (dots == 0) return 0;
+    if (dots < len && charAt(input, start, out, len - 1 - dots) != '/')
+      return 0;
+    return dots;
+  }
+
+  private static void removeDotSegment(StringBuilder out) {
+    int dots = dotSegment(out, 0, out.length(), out);
+    int segmentStart = out.length() - dots;
+    if (dots == 1 || segmentStart == 0) {
+      out.setLength(segmentStart);
+      return;
+    }
+
+    // the slash before .. and its previous segment are removed
+    int slash = segmentStart - 1;
+    out.setLength(slash == 0 ? 1 : out.lastIndexOf("/", slash - 1) + 1);
+  }
+
+  // a byte which would form a separator or a new escape is never decoded
+  private static boolean isDecodable(CharSequence input, int i, int end) {
+    if (i + 2 >= end) return false;
+    int high = Character.digit(input.charAt(i + 1), 16);
+    int low = Character.digit(input.charAt(i + 2), 16);
+    if (high == -1 || low == -1) return false;
+    return RESERVED_BYTES.indexOf(high * 16 + low) == -1;
+  }
+
+  // decodes consecutive percent-encoded bytes as UTF-8
+  private static int decode(CharSequence input, int i, int end,
+      StringBuilder out) {
+    int j = i;
+    while (j < end && input.charAt(j) == '%' && isDecodable(input, j, end)) {
+      j += 3;
+    }
+
+    byte[] bytes = new byte[(j - i) / 3];
+    for (int b = 0; b < bytes.length; b++) {
+      bytes[b] = (byte) (Character.digit(input.charAt(i + 3 * b + 1), 16) * 16
+          + Character.digit(input.charAt(i + 3 * b + 2), 16));
+    }
+    out.append(new String(bytes, UTF_8));
+    return j;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this).add("decoding", decoding)
+        .add("slashCollapsing", slashCollapsing)
+        .add("matrixParameterStripping", matrixParameterStripping)
+        .add("dotSegmentRemoval", dotSegmentRemoval)
+        .add("trailingSlashRemoval", trailingSlashRemoval).toString();
+  }
+
+}
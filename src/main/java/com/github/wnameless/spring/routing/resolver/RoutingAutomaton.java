@@ -0,0 +1,348 @@
+/*
+ *
+ * Copyright 2020 Wei-Ming Wu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+package com.github.wnameless.spring.routing.resolver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
+import java.util.regex.Pattern;
+
+/**
+ *
+ * {@link RoutingAutomaton} merges the regex paths of many {@link RoutingPath}s
+ * into one automaton, so a request path is scanned exactly once no matter how
+ * many {@link RoutingPath}s there are.
+ * <p>
+ * The {@link AtomPattern}s of all regex paths form one NFA, and the DFA
+ * states are built lazily from it while matching. Each DFA state is tagged by
+ * the ids of the {@link RoutingPath}s it accepts. A regex path which can't be
+ * turned into an {@link AtomPattern} is still matched by its
+ * {@link java.util.regex.Pattern}.
+ * <p>
+ * Every built DFA state and transition is cached. If the number of DFA states
+ * reaches the limit, the cache is flushed and built again from the start
+ * state, so the memory stays bounded and a lookup never rebuilds a state
+ * which is already cached.
+ *
+ */
+final class RoutingAutomaton {
+
+  static final int MAX_DFA_STATES = 4096;
+
+  private static final int ACCEPT = -1;
+
+  private final IntFunction<Pattern> regexPaths;
+  private final int[] fallbackIds;
+
+  // NFA states, one per atom of each regex path plus an accept state
+  private final int[] types;
+  private final int[] codePoints;
+  private final int[] quantifiers;
+  private final int[] routingIds;
+
+  // code point classes of the DFA alphabet
+  private final int[] asciiClasses = new int[128];
+  // the sorted non-ASCII code points which have their own classes
+  private final int[] otherCodePoints;
+  private final int[] otherClasses;
+  private final int otherClass;
+  private final int[] classCodePoints;
+  private final boolean[] slashClasses;
+  private final boolean[] lineTerminatorClasses;
+
+  private final int maxDfaStates;
+  private final ConcurrentMap<StateKey, DfaState> dfaStates =
+      new ConcurrentHashMap<>();
+  private final StateKey startKey;
+  private volatile DfaState startState;
+
+  /**
+   * Creates a {@link RoutingAutomaton}. The index of each {@link AtomPattern}
+   * in given list is used as the id of its {@link RoutingPath}.
+   *
+   * @param regexPaths
+   *          returns the regex path of a {@link RoutingPath} by its id, only
+   *          called if its regex path is not supported by {@link AtomPattern}
+   * @param atomPatterns
+   *          the {@link AtomPattern}s of the {@link RoutingPath}s, null if a
+   *          regex path is not supported
+   */
+  RoutingAutomaton(IntFunction<Pattern> regexPaths,
+      List<AtomPattern> atomPatterns) {
+    this(regexPaths, atomPatterns, MAX_DFA_STATES);
+  }
+
+  /**
+   * Creates a {@link RoutingAutomaton} with given limit of DFA states.
+   *
+   * @param regexPaths
+   *          returns the regex path of a {@link RoutingPath} by its id, only
+   *          called if its regex path is not supported by {@link AtomPattern}
+   * @param atomPatterns
+   *          the {@link AtomPattern}s of the {@link RoutingPath}s, null if a
+   *          regex path is not supported
+   * @param maxDfaStates
+   *          the maximum number of cached DFA states
+   */
+  RoutingAutomaton(IntFunction<Pattern> regexPaths,
+      List<AtomPattern> atomPatterns, int maxDfaStates) {
+    this.regexPaths = regexPaths;
+    this.maxDfaStates = maxDfaStates;
+
+    List<Integer> fallbacks = new ArrayList<>();
+    int size = 0;
+    for (int i = 0; i < atomPatterns.size(); i++) {
+      AtomPattern atoms = atomPatterns.get(i);
+      if (atoms == null) {
+        fallbacks.add(i);
+      } else {
+        size += atoms.size() + 1;
+      }
+    }
+    fallbackIds = fallbacks.stream().mapToInt(Integer::intValue).toArray();
+
+    types = new int[size];
+    codePoints = new int[size];
+    quantifiers = new int[size];
+    routingIds = new int[size];
+    List<Integer> starts = new ArrayList<>();
+    int state = 0;
+    for (int i = 0; i < atomPatterns.size(); i++) {
+      AtomPattern atoms = atomPatterns.get(i);
+      if (atoms == null) continue;
+
+      starts.add(state);
+      for (int a = 0; a < atoms.size(); a++) {
+        types[state] = atoms.type(a);
+        codePoints[state] = atoms.codePoint(a);
+        quantifiers[state] = atoms.quantifier(a);
+        routingIds[state] = i;
+        state++;
+      }
+      types[state] = ACCEPT;
+      routingIds[state] = i;
+      state++;
+    }
+
+    // every literal code point, the slash and the line terminators which are
+    // not matched by . get their own classes
+    Map<Integer, Integer> classes = new TreeMap<>();
+    for (int s = 0; s < size; s++) {
+      if (types[s] == AtomPattern.CHAR)
+        classes.putIfAbsent(codePoints[s], classes.size());
+    }
+    for (int cp : new int[] { '/', '\n', '\r', '\u0085', 0x2028, 0x2029 }) {
+      classes.putIfAbsent(cp, classes.size());
+    }
+    otherClass = classes.size();
+    classCodePoints = new int[otherClass + 1];
+    slashClasses = new boolean[otherClass + 1];
+    lineTerminatorClasses = new boolean[otherClass + 1];
+    Arrays.fill(asciiClasses, otherClass);
+    classCodePoints[otherClass] = -1;
+    int others = (int) classes.keySet().stream()
+        .filter(cp -> cp >= asciiClasses.length).count();
+    otherCodePoints = new int[others];
+    otherClasses = new int[others];
+    int other = 0;
+    // in code point order, so the non-ASCII code points are sorted
+    for (Map.Entry<Integer, Integer> entry : classes.entrySet()) {
+      int cp = entry.getKey();
+      int cls = entry.getValue();
+      if (cp < asciiClasses.length) {
+        asciiClasses[cp] = cls;
+      } else {
+        otherCodePoints[other] = cp;
+        otherClasses[other++] = cls;
+      }
+      classCodePoints[cls] = cp;
+      slashClasses[cls] = cp == '/';
+      lineTerminatorClasses[cls] = AtomPattern.isLineTerminator(cp);
+    }
+
+    BitSet startStates = new BitSet(size);
+    for (int start : starts) {
+      addClosure(start, startStates);
+    }
+    startKey = new StateKey(startStates.stream().toArray());
+    startState = newStartState();
+  }
+
+  /**
+   * Returns the number of cached DFA states.
+   *
+   * @return the number of cached DFA states
+   */
+  int dfaStateCount() {
+    return dfaStates.size();
+  }
+
+  /**
+   * Collects the ids of all {@link RoutingPath}s whose regex path matches the
+   * given range of a request path. No object is created once the visited DFA
+   * states are built, unless some regex paths are not supported by
+   * {@link AtomPattern}.
+   *
+   * @param requestPath
+   *          a request path
+   * @param start
+   *          the start index, inclusive
+   * @param end
+   *          the end index, exclusive
+   * @param matches
+   *          to store the collected ids
+   */
+  void collectMatches(CharSequence requestPath, int start, int end,
+      BitSet matches) {
+    DfaState state = startState;
+    for (int i = start; i < end && state.nfaStates.length > 0;) {
+      int cp = AtomPattern.codePointAt(requestPath, i, end);
+      i += Character.charCount(cp);
+      state = next(state, classOf(cp));
+    }
+    for (int id : state.accepts) {
+      matches.set(id);
+    }
+
+    for (int id : fallbackIds) {
+      if (regexPaths.apply(id).matcher(requestPath.subSequence(start, end))
+          .matches())
+        matches.set(id);
+    }
+  }
+
+  private int classOf(int cp) {
+    if (cp < asciiClasses.length) return asciiClasses[cp];
+    int i = Arrays.binarySearch(otherCodePoints, cp);
+    return i < 0 ? otherClass : otherClasses[i];
+  }
+
+  private DfaState next(DfaState state, int cls) {
+    DfaState next = state.next.get(cls);
+    if (next != null) return next;
+
+    BitSet targets = new BitSet(types.length);
+    for (int s : state.nfaStates) {
+      if (accepts(s, cls)) addClosure(
+          quantifiers[s] == AtomPattern.STAR ? s : s + 1, targets);
+    }
+    next = intern(new StateKey(targets.stream().toArray()));
+    state.next.set(cls, next);
+
+    return next;
+  }
+
+  private boolean accepts(int state, int cls) {
+    switch (types[state]) {
+      case AtomPattern.CHAR:
+        return classCodePoints[cls] == codePoints[state];
+      case AtomPattern.NOT_SLASH:
+        return !slashClasses[cls];
+      case AtomPattern.ANY:
+        return !lineTerminatorClasses[cls];
+      default:
+        return false;
+    }
+  }
+
+  private void addClosure(int state, BitSet states) {
+    states.set(state);
+    while (types[state] != ACCEPT && quantifiers[state] != AtomPattern.ONE) {
+      states.set(++state);
+    }
+  }
+
+  private DfaState intern(StateKey key) {
+    DfaState dfaState = dfaStates.get(key);
+    if (dfaState != null) return dfaState;
+
+    if (dfaStates.size() >= maxDfaStates) flush();
+    dfaState =
+        new DfaState(key.states, acceptedIds(key.states), otherClass + 1);
+    DfaState existing = dfaStates.putIfAbsent(key, dfaState);
+    return existing == null ? dfaState : existing;
+  }
+
+  /**
+   * Drops all cached DFA states and starts over from a new start state. A
+   * lookup still walking the dropped states finishes normally, and the
+   * dropped states are collected after that.
+   */
+  private synchronized void flush() {
+    if (dfaStates.size() < maxDfaStates) return;
+    dfaStates.clear();
+    startState = newStartState();
+  }
+
+  private DfaState newStartState() {
+    DfaState dfaState = new DfaState(startKey.states,
+        acceptedIds(startKey.states), otherClass + 1);
+    dfaStates.put(startKey, dfaState);
+    return dfaState;
+  }
+
+  private int[] acceptedIds(int[] states) {
+    return Arrays.stream(states).filter(s -> types[s] == ACCEPT)
+        .map(s -> routingIds[s]).sorted().toArray();
+  }
+
+  private static final class DfaState {
+
+    final int[] nfaStates;
+    final int[] accepts;
+    final AtomicReferenceArray<DfaState> next;
+
+    DfaState(int[] nfaStates, int[] accepts, int classes) {
+      this.nfaStates = nfaStates;
+      this.accepts = accepts;
+      next = new AtomicReferenceArray<>(classes);
+    }
+
+  }
+
+  private static final class StateKey {
+
+    final int[] states;
+    final int hashCode;
+
+    StateKey(int[] states) {
+      this.states = states;
+      hashCode = Arrays.hashCode(states);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof StateKey
+          && Arrays.equals(states, ((StateKey) other).states);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+  }
+
+}
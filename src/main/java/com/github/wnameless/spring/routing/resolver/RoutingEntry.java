@@ -0,0 +1,167 @@
+/*
+ *
+ * Copyright 2020 Wei-Ming Wu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+package com.github.wnameless.spring.routing.resolver;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.lang.annotation.Annotation;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.springframework.web.bind.annotation.RequestMethod;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+
+/**
+ *
+ * {@link RoutingEntry} is the compact form of the {@link RoutingPath}s which
+ * are mapped by the same path of the same Java method. It holds the allowable
+ * {@link RequestMethod}s in an {@link java.util.EnumSet}, and each
+ * {@link RoutingPath} is only a view of one {@link RequestMethod} of it, so the
+ * regex path is compiled once for all of them.
+ * <p>
+ * The annotation lists are immutable and shared by all {@link RoutingEntry}s
+ * of the same controller class or Java method. They are only copied if given
+ * lists are not {@link ImmutableList}s, so the accessors of a
+ * {@link RoutingPath} return them directly.
+ *
+ */
+final class RoutingEntry {
+
+  final Set<RequestMethod> methods;
+  final String rawPath;
+  final String path;
+  final String regex;
+  // compiled on first use if only the regex is given
+  private volatile Pattern regexPath;
+  final List<Annotation> classAnnotations;
+  final List<Annotation> methodAnnotations;
+  final List<List<Annotation>> parameterAnnotations;
+
+  /**
+   * Creates a {@link RoutingEntry}.
+   *
+   * @param methods
+   *          the allowable {@link RequestMethod}s
+   * @param rawPath
+   *          the raw path value from the original mapping
+   * @param path
+   *          the path which all place holders are replaced
+   * @param regex
+   *          the regex used to match valid HTTP requests
+   * @param regexPath
+   *          the compiled regex, null if it is compiled lazily
+   * @param classAnnotations
+   *          an immutable list of class annotations
+   * @param methodAnnotations
+   *          an immutable list of method annotations
+   * @param parameterAnnotations
+   *          an immutable list of immutable parameter annotation lists
+   */
+  RoutingEntry(Set<RequestMethod> methods, String rawPath, String path,
+      String regex, Pattern regexPath, List<Annotation> classAnnotations,
+      List<Annotation> methodAnnotations,
+      List<List<Annotation>> parameterAnnotations) {
+    checkArgument(!methods.isEmpty(), "methods must not be empty");
+    this.methods = Sets.immutableEnumSet(methods);
+    this.rawPath = checkNotNull(rawPath);
+    this.path = checkNotNull(path);
+    this.regex = checkNotNull(regex);
+    this.regexPath = regexPath;
+    this.classAnnotations = ImmutableList.copyOf(classAnnotations);
+    this.methodAnnotations = ImmutableList.copyOf(methodAnnotations);
+    this.parameterAnnotations = immutableCopyOf(parameterAnnotations);
+  }
+
+  private static List<List<Annotation>> immutableCopyOf(
+      List<List<Annotation>> parameterAnnotations) {
+    if (parameterAnnotations instanceof ImmutableList && parameterAnnotations
+        .stream().allMatch(annos -> annos instanceof ImmutableList))
+      return parameterAnnotations;
+
+    ImmutableList.Builder<List<Annotation>> annos = ImmutableList.builder();
+    for (List<Annotation> parameterAnnos : parameterAnnotations) {
+      annos.add(ImmutableList.copyOf(parameterAnnos));
+    }
+    return annos.build();
+  }
+
+  /**
+   * Returns the compiled regex path, it is compiled on the first call if only
+   * the regex is given.
+   *
+   * @return a {@link Pattern} of the regex path
+   */
+  Pattern getRegexPath() {
+    Pattern pattern = regexPath;
+    if (pattern == null) regexPath = pattern = Pattern.compile(regex);
+    return pattern;
+  }
+
+  /**
+   * Checks if the regex path is compiled.
+   *
+   * @return true if the regex path is compiled, false otherwise
+   */
+  boolean isRegexPathCompiled() {
+    return regexPath != null;
+  }
+
+  /**
+   * Returns one {@link RoutingPath} view per {@link RequestMethod} in the
+   * declaring order of {@link RequestMethod}.
+   *
+   * @return an immutable list of {@link RoutingPath}
+   */
+  List<RoutingPath> toRoutingPaths() {
+    ImmutableList.Builder<RoutingPath> routingPaths = ImmutableList.builder();
+    for (RequestMethod method : methods) {
+      routingPaths.add(new RoutingPath(method, this));
+    }
+    return routingPaths.build();
+  }
+
+  /**
+   * Two {@link RoutingEntry}s are equal if they map the same path with equal
+   * annotations, the allowable {@link RequestMethod}s are not compared because
+   * each {@link RoutingPath} compares its own {@link RequestMethod}.
+   */
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) return true;
+    if (!(other instanceof RoutingEntry)) return false;
+    RoutingEntry castOther = (RoutingEntry) other;
+    return Objects.equals(rawPath, castOther.rawPath)
+        && Objects.equals(path, castOther.path)
+        && Objects.equals(regex, castOther.regex)
+        && Objects.equals(classAnnotations, castOther.classAnnotations)
+        && Objects.equals(methodAnnotations, castOther.methodAnnotations)
+        && Objects.equals(parameterAnnotations, castOther.parameterAnnotations);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(rawPath, path, regex, classAnnotations,
+        methodAnnotations, parameterAnnotations);
+  }
+
+}
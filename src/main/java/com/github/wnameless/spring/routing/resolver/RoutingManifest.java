@@ -0,0 +1,46 @@
+/*
+ *
+ * Copyright 2020 Wei-Ming Wu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+package com.github.wnameless.spring.routing.resolver;
+
+import java.util.List;
+
+import org.springframework.core.env.Environment;
+
+/**
+ * 
+ * {@link RoutingManifest} lists all request mapping methods of Spring annotated
+ * controllers at compile time, so a {@link RoutingPathResolver} can be created
+ * by
+ * {@link RoutingPathResolver#fromManifest(Environment, RoutingManifest, String...)}
+ * without scanning every controller bean. It is usually generated by the
+ * annotation processor of the spring-routing-resolver-processor module.
+ *
+ */
+public interface RoutingManifest {
+
+  /**
+   * Returns all request mapping methods. The methods of a controller are listed
+   * in the order that {@link RoutingPathResolver} scans them: methods annotated
+   * by RequestMapping first, then GetMapping, PostMapping, DeleteMapping,
+   * PutMapping and PatchMapping, each group in the source order.
+   * 
+   * @return a list of {@link MappingMethod}
+   */
+  List<MappingMethod> getMappingMethods();
+
+}
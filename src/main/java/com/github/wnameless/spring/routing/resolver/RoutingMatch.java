@@ -0,0 +1,95 @@
+/*
+ *
+ * Copyright 2020 Wei-Ming Wu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+package com.github.wnameless.spring.routing.resolver;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Map;
+import java.util.Objects;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * 
+ * {@link RoutingMatch} represents a {@link RoutingPath} matched by a request
+ * path together with the values of its path variables. It is an immutable
+ * class.
+ *
+ */
+public final class RoutingMatch {
+
+  private final RoutingPath routingPath;
+  private final Map<String, String> pathVariables;
+
+  /**
+   * Creates a {@link RoutingMatch}.
+   * 
+   * @param routingPath
+   *          the matched {@link RoutingPath}
+   * @param pathVariables
+   *          the values of path variables keyed by their names
+   */
+  public RoutingMatch(RoutingPath routingPath,
+      Map<String, String> pathVariables) {
+    this.routingPath = checkNotNull(routingPath);
+    this.pathVariables = ImmutableMap.copyOf(pathVariables);
+  }
+
+  /**
+   * Returns the matched {@link RoutingPath}.
+   * 
+   * @return a {@link RoutingPath}
+   */
+  public RoutingPath getRoutingPath() {
+    return routingPath;
+  }
+
+  /**
+   * Returns the values of path variables keyed by their names in the order of
+   * the path, ex: {id=123} for the path /users/{id} and the request path
+   * /users/123. The name of a variable with a regex, ex: {id:\d+}, is the part
+   * before the colon.
+   * 
+   * @return an immutable map of path variables
+   */
+  public Map<String, String> getPathVariables() {
+    return pathVariables;
+  }
+
+  @Override
+  public boolean equals(final Object other) {
+    if (this == other) return true;
+    if (!(other instanceof RoutingMatch)) return false;
+    RoutingMatch castOther = (RoutingMatch) other;
+    return Objects.equals(routingPath, castOther.routingPath)
+        && Objects.equals(pathVariables, castOther.pathVariables);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(routingPath, pathVariables);
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this).add("routingPath", routingPath)
+        .add("pathVariables", pathVariables).toString();
+  }
+
+}
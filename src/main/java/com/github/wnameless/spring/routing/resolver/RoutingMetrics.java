@@ -0,0 +1,151 @@
+/*
+ *
+ * Copyright 2020 Wei-Ming Wu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+package com.github.wnameless.spring.routing.resolver;
+
+import java.util.Map;
+
+import org.springframework.web.bind.annotation.RequestMethod;
+
+/**
+ *
+ * {@link RoutingMetrics} receives the measurements of a
+ * {@link RoutingPathResolver}. All methods do nothing by default, and
+ * {@link #NOOP} is used unless another {@link RoutingMetrics} is set by
+ * {@link RoutingPathResolverOptions#withMetrics(RoutingMetrics)}, in which
+ * case lookups are not timed at all.
+ * <p>
+ * Implementations must be thread-safe, since lookups are measured in the
+ * calling threads and a parallel build measures its phases concurrently.
+ *
+ * @see MicrometerRoutingMetrics
+ */
+public interface RoutingMetrics {
+
+  /**
+   * A {@link RoutingMetrics} which ignores all measurements.
+   */
+  RoutingMetrics NOOP = new RoutingMetrics() {};
+
+  /**
+   * The phases of building a {@link RoutingPathResolver}.
+   */
+  enum BuildPhase {
+
+    /**
+     * Finding the controller classes.
+     */
+    BEAN_DISCOVERY,
+
+    /**
+     * Finding the mapping methods and their mapping annotations.
+     */
+    METHOD_SCAN,
+
+    /**
+     * Replacing the place holders of paths by the Spring environment.
+     */
+    PLACEHOLDER_RESOLUTION,
+
+    /**
+     * Turning paths into regex paths and compiling them.
+     */
+    REGEX_COMPILATION,
+
+    /**
+     * Building the routing tables and the annotation index.
+     */
+    INDEXING
+
+  }
+
+  /**
+   * The lookup methods of a {@link RoutingPathResolver}.
+   */
+  enum Lookup {
+
+    FIND_BY_REQUEST_PATH, FIND_BY_REQUEST_PATH_AND_METHOD,
+    FIND_BY_REQUEST_PATHS_AND_METHODS,
+    FIND_BEST_MATCH_BY_REQUEST_PATH_AND_METHOD,
+    MATCH_BY_REQUEST_PATH_AND_METHOD, MATCH_BEST_BY_REQUEST_PATH_AND_METHOD,
+    FIND_BY_ANNOTATION_TYPE,
+    FIND_BY_CLASS_ANNOTATION_TYPE, FIND_BY_METHOD_ANNOTATION_TYPE,
+    FIND_BY_PARAMETER_ANNOTATION_TYPE
+
+  }
+
+  /**
+   * The results of a lookup.
+   */
+  enum LookupResult {
+
+    /**
+     * A path equals to the normalized request path is found, so no regex path
+     * is tried.
+     */
+    LITERAL_HIT,
+
+    /**
+     * Only a regex path matches the request path.
+     */
+    REGEX_HIT,
+
+    /**
+     * Some {@link RoutingPath}s are found by an annotation type.
+     */
+    INDEX_HIT,
+
+    /**
+     * Nothing is found.
+     */
+    MISS
+
+  }
+
+  /**
+   * Records the time spent on a build phase. A phase may be recorded many
+   * times during one build, ex: once per controller.
+   *
+   * @param phase
+   *          a {@link BuildPhase}
+   * @param nanos
+   *          the time spent in nanoseconds
+   */
+  default void recordBuildPhase(BuildPhase phase, long nanos) {}
+
+  /**
+   * Records the number of {@link RoutingPath}s of each {@link RequestMethod}
+   * whenever a routing state is published.
+   *
+   * @param routeCounts
+   *          the number of {@link RoutingPath}s of each {@link RequestMethod}
+   */
+  default void recordRouteCounts(Map<RequestMethod, Integer> routeCounts) {}
+
+  /**
+   * Records a lookup.
+   *
+   * @param lookup
+   *          the {@link Lookup} method
+   * @param result
+   *          the {@link LookupResult}
+   * @param nanos
+   *          the time spent in nanoseconds
+   */
+  default void recordLookup(Lookup lookup, LookupResult result, long nanos) {}
+
+}
@@ -17,12 +17,11 @@
  */
 package com.github.wnameless.spring.routing.resolver;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
-import static java.util.Collections.unmodifiableList;
 
 import java.lang.annotation.Annotation;
-import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.regex.Pattern;
@@ -31,7 +30,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 
 import com.google.common.base.MoreObjects;
-import com.google.common.collect.ForwardingList;
+import com.google.common.collect.ImmutableList;
 
 /**
  * 
@@ -43,12 +42,8 @@ import com.google.common.collect.ForwardingList;
 public final class RoutingPath {
 
   private final RequestMethod method;
-  private final String rawPath;
-  private final String path;
-  private final Pattern regexPath;
-  private final List<Annotation> classAnnotations;
-  private final List<Annotation> methodAnnotations;
-  private final List<List<Annotation>> parameterAnnotations = new ArrayList<>();
+  // shared by the RoutingPaths of other RequestMethods
+  private final RoutingEntry entry;
 
   /**
    * Creates an {@link RoutingPath}.
@@ -70,15 +65,68 @@ public final class RoutingPath {
   public RoutingPath(RequestMethod method, String rawPath, String path,
       Pattern regexPath, Annotation[] classAnnotations,
       Annotation[] methodAnnotations, Annotation[][] parameterAnnotations) {
-    this.method = checkNotNull(method);
-    this.rawPath = checkNotNull(rawPath);
-    this.regexPath = checkNotNull(regexPath);
-    this.path = checkNotNull(path);
-    this.classAnnotations = new ArrayList<>(Arrays.asList(classAnnotations));
-    this.methodAnnotations = new ArrayList<>(Arrays.asList(methodAnnotations));
-    for (Annotation[] annos : parameterAnnotations) {
-      this.parameterAnnotations.add(new ArrayList<>(Arrays.asList(annos)));
+    this(method, new RoutingEntry(EnumSet.of(method), rawPath, path,
+        checkNotNull(regexPath).pattern(), regexPath,
+        ImmutableList.copyOf(classAnnotations),
+        ImmutableList.copyOf(methodAnnotations),
+        copyOf(parameterAnnotations)));
+  }
+
+  /**
+   * Creates an {@link RoutingPath} whose regex path is compiled lazily on the
+   * first call of {@link #getRegexPath()}.
+   * 
+   * @param method
+   *          an allowable {@link RequestMethod}
+   * @param rawPath
+   *          the raw path value from the original {@link RequestMapping}
+   * @param path
+   *          the path which all place holders are replaced by Spring
+   *          environment variables
+   * @param regex
+   *          the regex used to match valid HTTP requests
+   * @param classAnnotations
+   *          all class annotations of the original {@link RequestMapping}
+   * @param methodAnnotations
+   *          all method annotations of the original {@link RequestMapping}
+   */
+  public RoutingPath(RequestMethod method, String rawPath, String path,
+      String regex, Annotation[] classAnnotations,
+      Annotation[] methodAnnotations, Annotation[][] parameterAnnotations) {
+    this(method, new RoutingEntry(EnumSet.of(method), rawPath, path, regex,
+        null, ImmutableList.copyOf(classAnnotations),
+        ImmutableList.copyOf(methodAnnotations),
+        copyOf(parameterAnnotations)));
+  }
+
+  /**
+   * Creates a {@link RoutingPath} as a view of given {@link RoutingEntry}.
+   * 
+   * @param method
+   *          one of the {@link RequestMethod}s of the {@link RoutingEntry}
+   * @param entry
+   *          a {@link RoutingEntry}
+   */
+  RoutingPath(RequestMethod method, RoutingEntry entry) {
+    checkArgument(entry.methods.contains(method),
+        "method must be allowed by entry");
+    this.method = method;
+    this.entry = entry;
+  }
+
+  /**
+   * Copies parameter annotations into immutable lists.
+   * 
+   * @param parameterAnnotations
+   *          parameter annotations of a Java method
+   * @return an immutable list of immutable annotation lists
+   */
+  static List<List<Annotation>> copyOf(Annotation[][] parameterAnnotations) {
+    ImmutableList.Builder<List<Annotation>> annos = ImmutableList.builder();
+    for (Annotation[] parameterAnnos : parameterAnnotations) {
+      annos.add(ImmutableList.copyOf(parameterAnnos));
     }
+    return annos.build();
   }
 
   /**
@@ -96,7 +144,7 @@ public final class RoutingPath {
    * @return a raw path
    */
   public String getRawPath() {
-    return rawPath;
+    return entry.rawPath;
   }
 
   /**
@@ -105,16 +153,26 @@ public final class RoutingPath {
    * @return a path
    */
   public String getPath() {
-    return path;
+    return entry.path;
   }
 
   /**
-   * Returns the regex path of this mapping.
+   * Returns the regex path of this mapping. It is compiled on the first call
+   * if this {@link RoutingPath} is created by the regex only.
    * 
    * @return a {@link Pattern} of the regex path
    */
   public Pattern getRegexPath() {
-    return regexPath;
+    return entry.getRegexPath();
+  }
+
+  /**
+   * Returns the regex of the regex path without compiling it.
+   * 
+   * @return the regex of the regex path
+   */
+  String getRegex() {
+    return entry.regex;
   }
 
   /**
@@ -123,7 +181,7 @@ public final class RoutingPath {
    * @return all class annotations
    */
   public List<Annotation> getClassAnnotations() {
-    return unmodifiableList(classAnnotations);
+    return entry.classAnnotations;
   }
 
   /**
@@ -132,7 +190,7 @@ public final class RoutingPath {
    * @return all method annotations
    */
   public List<Annotation> getMethodAnnotations() {
-    return unmodifiableList(methodAnnotations);
+    return entry.methodAnnotations;
   }
 
   /**
@@ -141,21 +199,17 @@ public final class RoutingPath {
    * @return all parameter annotations
    */
   public List<List<Annotation>> getParameterAnnotations() {
-    return unmodifiableList2(parameterAnnotations);
+    return entry.parameterAnnotations;
   }
 
-  private <T> List<List<T>> unmodifiableList2(final List<List<T>> input) {
-    return unmodifiableList(new ForwardingList<List<T>>() {
-      @Override
-      protected List<List<T>> delegate() {
-        return unmodifiableList(input);
-      }
-
-      @Override
-      public List<T> get(int index) {
-        return unmodifiableList(delegate().get(index));
-      }
-    });
+  /**
+   * Returns the {@link RoutingEntry} which this {@link RoutingPath} is a view
+   * of.
+   * 
+   * @return a {@link RoutingEntry}
+   */
+  RoutingEntry getEntry() {
+    return entry;
   }
 
   @Override
@@ -164,27 +218,22 @@ public final class RoutingPath {
     if (!(other instanceof RoutingPath)) return false;
     RoutingPath castOther = (RoutingPath) other;
     return Objects.equals(method, castOther.method)
-        && Objects.equals(rawPath, castOther.rawPath)
-        && Objects.equals(path, castOther.path)
-        && Objects.equals(regexPath, castOther.regexPath)
-        && Objects.equals(classAnnotations, castOther.classAnnotations)
-        && Objects.equals(methodAnnotations, castOther.methodAnnotations)
-        && Objects.equals(parameterAnnotations, castOther.parameterAnnotations);
+        && Objects.equals(entry, castOther.entry);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(method, rawPath, path, regexPath, classAnnotations,
-        methodAnnotations, parameterAnnotations);
+    return Objects.hash(method, entry);
   }
 
   @Override
   public String toString() {
     return MoreObjects.toStringHelper(this).add("method", method)
-        .add("rawPath", rawPath).add("path", path).add("regexPath", regexPath)
-        .add("classAnnotations", classAnnotations)
-        .add("methodAnnotations", methodAnnotations)
-        .add("parameterAnnotations", parameterAnnotations).toString();
+        .add("rawPath", entry.rawPath).add("path", entry.path)
+        .add("regexPath", entry.regex)
+        .add("classAnnotations", entry.classAnnotations)
+        .add("methodAnnotations", entry.methodAnnotations)
+        .add("parameterAnnotations", entry.parameterAnnotations).toString();
   }
 
 }
@@ -17,52 +17,81 @@
  */
 package com.github.wnameless.spring.routing.resolver;
 
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.regex.Matcher;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import org.springframework.context.ApplicationContext;
 import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Controller;
-import org.springframework.web.bind.annotation.DeleteMapping;
-import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.PatchMapping;
-import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.github.wnameless.spring.routing.resolver.ControllerMetadata.MethodMetadata;
+import com.github.wnameless.spring.routing.resolver.HandlerMethodRegistry.HandlerMapping;
+import com.github.wnameless.spring.routing.resolver.RoutingMetrics.BuildPhase;
+import com.github.wnameless.spring.routing.resolver.RoutingMetrics.Lookup;
+import com.github.wnameless.spring.routing.resolver.RoutingMetrics.LookupResult;
+import com.github.wnameless.spring.routing.resolver.RoutingSnapshot.BuildMode;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
+import com.google.common.reflect.TypeToken;
 
 /**
  * 
  * {@link RoutingPathResolver} searches all Spring annotated routing paths under
  * given package bases which are provided by {@link RequestMapping} annotations
  * into a list of {@link RoutingPath} objects.
+ * <p>
+ * A {@link RoutingPathResolver} is thread-safe and can be shared freely. All
+ * routing paths, indexes and the lists they return are immutable, built once
+ * per routing state and returned without copying.
  *
  */
 public final class RoutingPathResolver {
 
-  private static final Pattern PLACEHOLDER = Pattern.compile("\\$\\{[^}]+\\}");
-  private static final Pattern PATH_VAR = Pattern.compile("\\{[^}]+\\}");
-  private static final Pattern ANT_AA = Pattern.compile("\\*\\*");
-  private static final Pattern ANT_A = Pattern.compile("\\*");
-  private static final Pattern ANT_Q = Pattern.compile("\\?");
-
   private final Environment env;
-  private final Set<RoutingPath> routingPaths = new LinkedHashSet<>();
+  private final RoutingPathResolverOptions options;
+  private final String[] basePackages;
+  private final Function<Class<?>, List<Method>> mappingMethods;
+  private final RoutingMetrics metrics;
+  // lookups are not timed at all if no RoutingMetrics is set
+  private final boolean metricsEnabled;
+  // only set if built from the handler methods of Spring MVC, volatile
+  // because it is replaced by refresh
+  private volatile Map<Class<?>, List<HandlerMapping>> handlerMappings;
+  private volatile RoutingState state;
 
   /**
    * Creates a {@link RoutingPathResolver}.
@@ -74,63 +103,336 @@ public final class RoutingPathResolver {
    */
   public RoutingPathResolver(ApplicationContext appCtx,
       String... basePackages) {
-    env = appCtx.getEnvironment();
+    this(appCtx, RoutingPathResolverOptions.defaults(), basePackages);
+  }
 
-    Map<String, Object> beans = appCtx.getBeansWithAnnotation(Controller.class);
-    beans.putAll(appCtx.getBeansWithAnnotation(RestController.class));
-    retainBeansByPackageNames(beans, basePackages);
+  /**
+   * Creates a {@link RoutingPathResolver} with optional features.
+   * 
+   * @param appCtx
+   *          the Spring {@link ApplicationContext}
+   * @param options
+   *          the {@link RoutingPathResolverOptions}
+   * @param basePackages
+   *          packages to be searched
+   */
+  public RoutingPathResolver(ApplicationContext appCtx,
+      RoutingPathResolverOptions options, String... basePackages) {
+    this(appCtx.getEnvironment(), options, basePackages,
+        getControllerClasses(appCtx, options.getMetrics(), basePackages),
+        RoutingPathResolver::getMappingMethods, null, BuildMode.REFLECTION);
+  }
 
-    for (Object bean : beans.values()) {
-      RequestMapping classMapping =
-          bean.getClass().getAnnotation(RequestMapping.class);
-
-      List<Method> mappingMethods =
-          getMethodsListWithAnnotation(bean.getClass(), RequestMapping.class);
-      mappingMethods.addAll(
-          getMethodsListWithAnnotation(bean.getClass(), GetMapping.class));
-      mappingMethods.addAll(
-          getMethodsListWithAnnotation(bean.getClass(), PostMapping.class));
-      mappingMethods.addAll(
-          getMethodsListWithAnnotation(bean.getClass(), DeleteMapping.class));
-      mappingMethods.addAll(
-          getMethodsListWithAnnotation(bean.getClass(), PutMapping.class));
-      mappingMethods.addAll(
-          getMethodsListWithAnnotation(bean.getClass(), PatchMapping.class));
-
-      for (Method method : mappingMethods) {
-        Annotation methodMapping = method.getAnnotation(RequestMapping.class);
-        if (methodMapping == null)
-          methodMapping = method.getAnnotation(GetMapping.class);
-        if (methodMapping == null)
-          methodMapping = method.getAnnotation(PostMapping.class);
-        if (methodMapping == null)
-          methodMapping = method.getAnnotation(DeleteMapping.class);
-        if (methodMapping == null)
-          methodMapping = method.getAnnotation(PutMapping.class);
-        if (methodMapping == null)
-          methodMapping = method.getAnnotation(PatchMapping.class);
-
-        for (Entry<String, RequestMethod> rawPathAndMethod : computeRawPaths(
-            classMapping, methodMapping)) {
-          String rawPath = rawPathAndMethod.getKey();
-          String path = computePath(rawPath);
-          String regexPath = computeRegexPath(path);
-          routingPaths
-              .add(new RoutingPath(rawPathAndMethod.getValue(), rawPath, path,
-                  Pattern.compile(regexPath), bean.getClass().getAnnotations(),
-                  method.getAnnotations(), method.getParameterAnnotations()));
+  /**
+   * Creates a {@link RoutingPathResolver} by the handler methods which Spring
+   * MVC has already registered in its
+   * {@link org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping}
+   * beans, so no controller is reflected again. It also finds the mappings
+   * which are missed by
+   * {@link #RoutingPathResolver(ApplicationContext, String...)}, ex: inherited
+   * methods, mappings declared by interfaces and composed mapping annotations.
+   * <p>
+   * The paths are combined and their place holders are resolved by Spring MVC,
+   * so the raw path of each {@link RoutingPath} equals to its path. Spring MVC
+   * is required.
+   * 
+   * @param appCtx
+   *          the Spring {@link ApplicationContext}
+   * @param basePackages
+   *          packages to be searched
+   * @return a {@link RoutingPathResolver}
+   */
+  public static RoutingPathResolver fromHandlerMethods(
+      ApplicationContext appCtx, String... basePackages) {
+    return fromHandlerMethods(appCtx, RoutingPathResolverOptions.defaults(),
+        basePackages);
+  }
+
+  /**
+   * Creates a {@link RoutingPathResolver} by the handler methods of Spring MVC
+   * with optional features.
+   * 
+   * @param appCtx
+   *          the Spring {@link ApplicationContext}
+   * @param options
+   *          the {@link RoutingPathResolverOptions}
+   * @param basePackages
+   *          packages to be searched
+   * @return a {@link RoutingPathResolver}
+   * @see #fromHandlerMethods(ApplicationContext, String...)
+   */
+  public static RoutingPathResolver fromHandlerMethods(
+      ApplicationContext appCtx, RoutingPathResolverOptions options,
+      String... basePackages) {
+    Map<Class<?>, List<HandlerMapping>> handlerMappings =
+        getHandlerMappings(appCtx, options.getMetrics(), basePackages);
+    // controllers added later without handler methods are scanned instead
+    return new RoutingPathResolver(appCtx.getEnvironment(), options,
+        basePackages, new ArrayList<>(handlerMappings.keySet()),
+        RoutingPathResolver::getMappingMethods, handlerMappings,
+        BuildMode.HANDLER_METHODS);
+  }
+
+  /**
+   * Creates a {@link RoutingPathResolver} by a {@link RoutingManifest} which is
+   * usually generated at compile time. Only the listed methods are looked up,
+   * no controller bean is scanned. The place holders of paths are still
+   * resolved by given {@link Environment}.
+   * <p>
+   * The {@link RoutingPath}s are the same as the ones found by
+   * {@link #RoutingPathResolver(ApplicationContext, String...)} if all
+   * controllers are Spring beans, but they are ordered by the manifest instead
+   * of the bean order.
+   * 
+   * @param env
+   *          the Spring {@link Environment}
+   * @param manifest
+   *          a {@link RoutingManifest}
+   * @param basePackages
+   *          packages to be searched
+   * @return a {@link RoutingPathResolver}
+   */
+  public static RoutingPathResolver fromManifest(Environment env,
+      RoutingManifest manifest, String... basePackages) {
+    return fromManifest(env, manifest, RoutingPathResolverOptions.defaults(),
+        basePackages);
+  }
+
+  /**
+   * Creates a {@link RoutingPathResolver} by a {@link RoutingManifest} with
+   * optional features.
+   * 
+   * @param env
+   *          the Spring {@link Environment}
+   * @param manifest
+   *          a {@link RoutingManifest}
+   * @param options
+   *          the {@link RoutingPathResolverOptions}
+   * @param basePackages
+   *          packages to be searched
+   * @return a {@link RoutingPathResolver}
+   * @throws IllegalStateException
+   *           if any listed class or method is not found
+   * @see #fromManifest(Environment, RoutingManifest, String...)
+   */
+  public static RoutingPathResolver fromManifest(Environment env,
+      RoutingManifest manifest, RoutingPathResolverOptions options,
+      String... basePackages) {
+    long startTime = System.nanoTime();
+    ClassLoader classLoader = manifest.getClass().getClassLoader();
+    Map<Class<?>, List<MappingMethod>> mappingMethods = new LinkedHashMap<>();
+    for (MappingMethod mappingMethod : manifest.getMappingMethods()) {
+      Class<?> controller;
+      try {
+        controller =
+            MappingMethod.toClass(mappingMethod.getClassName(), classLoader);
+      } catch (ClassNotFoundException e) {
+        throw new IllegalStateException(
+            "Controller not found: " + mappingMethod.getClassName(), e);
+      }
+      if (inPackages(controller, basePackages)) {
+        mappingMethods.computeIfAbsent(controller, k -> new ArrayList<>())
+            .add(mappingMethod);
+      }
+    }
+
+    options.getMetrics().recordBuildPhase(BuildPhase.BEAN_DISCOVERY,
+        System.nanoTime() - startTime);
+
+    // controllers added later are not listed, so they are scanned instead
+    return new RoutingPathResolver(env, options, basePackages,
+        new ArrayList<>(mappingMethods.keySet()),
+        controller -> !mappingMethods.containsKey(controller)
+            ? getMappingMethods(controller)
+            : mappingMethods.get(controller).stream()
+                .map(mappingMethod -> mappingMethod.toMethod(controller))
+                .collect(Collectors.toList()),
+        null, BuildMode.MANIFEST);
+  }
+
+  private RoutingPathResolver(Environment env,
+      RoutingPathResolverOptions options, String[] basePackages,
+      List<Class<?>> controllers,
+      Function<Class<?>, List<Method>> mappingMethods,
+      Map<Class<?>, List<HandlerMapping>> handlerMappings,
+      BuildMode buildMode) {
+    this.env = env;
+    this.options = options;
+    this.basePackages = basePackages.clone();
+    this.mappingMethods = mappingMethods;
+    this.handlerMappings = handlerMappings;
+    metrics = options.getMetrics();
+    metricsEnabled = metrics != RoutingMetrics.NOOP;
+
+    Path snapshotFile = options.getSnapshotFile();
+    byte[] fingerprint = snapshotFile == null ? null
+        : RoutingSnapshot.fingerprint(buildMode, controllers, handlerMappings);
+    List<RoutingSnapshot.Route> snapshot = fingerprint == null ? null
+        : RoutingSnapshot.read(snapshotFile, fingerprint);
+    Map<Class<?>, List<RoutingPath>> controllerPaths = snapshot == null ? null
+        : restoreRoutingPaths(snapshot, controllers);
+
+    if (controllerPaths == null) {
+      controllerPaths = new LinkedHashMap<>();
+      List<RoutingSnapshot.Route> routes = new ArrayList<>();
+      for (Entry<Class<?>, List<Entry<RoutingEntry, Method>>> entries
+          : scanRoutingEntries(controllers).entrySet()) {
+        List<RoutingPath> routingPaths = new ArrayList<>();
+        for (Entry<RoutingEntry, Method> entry : entries.getValue()) {
+          routingPaths.addAll(entry.getKey().toRoutingPaths());
+          routes.add(new RoutingSnapshot.Route(entries.getKey(),
+              entry.getKey(), entry.getValue()));
         }
+        controllerPaths.put(entries.getKey(), routingPaths);
       }
+      if (fingerprint != null)
+        RoutingSnapshot.write(snapshotFile, fingerprint, routes);
+    }
+
+    state = buildState(controllerPaths, null);
+  }
+
+  /**
+   * Re-scans the controller beans of given {@link ApplicationContext} under the
+   * package bases of this {@link RoutingPathResolver}. Only the added
+   * controllers are scanned and the removed ones are dropped, then a new
+   * immutable routing state is published by one atomic swap. Concurrent
+   * lookups are never blocked and see either the old or the new state.
+   * <p>
+   * If this {@link RoutingPathResolver} is created by the handler methods of
+   * Spring MVC, the handler methods are read again instead of the beans.
+   * <p>
+   * The resolution cache is replaced as well, so {@link #getCacheStats()}
+   * starts over.
+   * 
+   * @param appCtx
+   *          the Spring {@link ApplicationContext}
+   */
+  public synchronized void refresh(ApplicationContext appCtx) {
+    Set<Class<?>> controllers;
+    if (handlerMappings == null) {
+      controllers = new LinkedHashSet<>(
+          getControllerClasses(appCtx, metrics, basePackages));
+    } else {
+      handlerMappings = getHandlerMappings(appCtx, metrics, basePackages);
+      controllers = new LinkedHashSet<>(handlerMappings.keySet());
+    }
+    Set<Class<?>> removed = new LinkedHashSet<>(state.controllerPaths.keySet());
+    removed.removeAll(controllers);
+    update(controllers, removed);
+  }
+
+  /**
+   * Adds the routing paths of given controllers and publishes a new immutable
+   * routing state by one atomic swap. The package bases are not checked and
+   * the controllers which are already added are ignored.
+   * 
+   * @param controllers
+   *          the classes of controllers
+   * @see #refresh(ApplicationContext)
+   */
+  public synchronized void addControllers(Class<?>... controllers) {
+    update(Arrays.asList(controllers), ImmutableSet.of());
+  }
+
+  /**
+   * Removes the routing paths of given controllers and publishes a new
+   * immutable routing state by one atomic swap.
+   * 
+   * @param controllers
+   *          the classes of controllers
+   * @see #refresh(ApplicationContext)
+   */
+  public synchronized void removeControllers(Class<?>... controllers) {
+    update(ImmutableSet.of(), Arrays.asList(controllers));
+  }
+
+  private void update(Collection<Class<?>> added,
+      Collection<Class<?>> removed) {
+    RoutingState current = state;
+    Map<Class<?>, List<RoutingPath>> controllerPaths =
+        new LinkedHashMap<>(current.controllerPaths);
+    boolean changed = controllerPaths.keySet().removeAll(removed);
+
+    List<Class<?>> newControllers = added.stream().distinct()
+        .filter(c -> !controllerPaths.containsKey(c))
+        .collect(Collectors.toList());
+    for (Entry<Class<?>, List<Entry<RoutingEntry, Method>>> entries
+        : scanRoutingEntries(newControllers).entrySet()) {
+      controllerPaths.put(entries.getKey(), entries.getValue().stream()
+          .flatMap(entry -> entry.getKey().toRoutingPaths().stream())
+          .collect(Collectors.toList()));
+      changed = true;
+    }
+
+    if (changed) state = buildState(controllerPaths, current);
+  }
+
+  // the unchanged routing tables of the previous state are reused
+  private RoutingState buildState(
+      Map<Class<?>, ? extends List<RoutingPath>> controllerPaths,
+      RoutingState previous) {
+    long startTime = System.nanoTime();
+    Executor executor = options.getBuildExecutor();
+
+    Map<Class<?>, ImmutableList<RoutingPath>> immutablePaths =
+        new LinkedHashMap<>();
+    Set<RoutingPath> distinctPaths = new LinkedHashSet<>();
+    controllerPaths.forEach((controller, paths) -> {
+      immutablePaths.put(controller, ImmutableList.copyOf(paths));
+      distinctPaths.addAll(paths);
+    });
+    List<RoutingPath> routingPaths = ImmutableList.copyOf(distinctPaths);
+
+    CompletableFuture<RoutingTable> table =
+        previous != null && previous.routingPaths.equals(routingPaths)
+            ? CompletableFuture.completedFuture(previous.routingTable)
+            : supply(() -> new RoutingTable(routingPaths, options), executor);
+    Map<RequestMethod, List<RoutingPath>> methodPaths =
+        new EnumMap<>(RequestMethod.class);
+    for (RoutingPath routingPath : routingPaths) {
+      methodPaths.computeIfAbsent(routingPath.getMethod(),
+          k -> new ArrayList<>()).add(routingPath);
     }
+    Map<RequestMethod, CompletableFuture<RoutingTable>> methodTables =
+        new EnumMap<>(RequestMethod.class);
+    methodPaths.forEach((method, paths) -> {
+      RoutingTable previousTable =
+          previous == null ? null : previous.routingTables.get(method);
+      methodTables.put(method,
+          previousTable != null && previousTable.getRoutingPaths().equals(paths)
+              ? CompletableFuture.completedFuture(previousTable)
+              : supply(() -> new RoutingTable(paths, options), executor));
+    });
+    CompletableFuture<AnnotationIndex> index =
+        supply(() -> new AnnotationIndex(routingPaths), executor);
+
+    Map<RequestMethod, RoutingTable> routingTables =
+        new EnumMap<>(RequestMethod.class);
+    methodTables.forEach((method, t) -> routingTables.put(method, join(t)));
+    RoutingState state = new RoutingState(immutablePaths, routingPaths,
+        join(table), routingTables, join(index),
+        options.getCacheSpec() == null ? null
+            : CacheBuilder.from(options.getCacheSpec()).recordStats().build());
+
+    metrics.recordBuildPhase(BuildPhase.INDEXING,
+        System.nanoTime() - startTime);
+    Map<RequestMethod, Integer> routeCounts =
+        new EnumMap<>(RequestMethod.class);
+    methodPaths.forEach((method, paths) -> routeCounts.put(method,
+        paths.size()));
+    metrics.recordRouteCounts(routeCounts);
+    return state;
   }
 
   /**
-   * Returns a list of {@link RoutingPath} under given package bases.
+   * Returns a list of {@link RoutingPath} under given package bases. The list
+   * is shared by all callers until the routing state is changed.
    * 
-   * @return a list of {@link RoutingPath}
+   * @return an immutable list of {@link RoutingPath}
    */
   public List<RoutingPath> getRoutingPaths() {
-    return new ArrayList<>(routingPaths);
+    return state.routingPaths;
   }
 
   /**
@@ -139,19 +441,17 @@ public final class RoutingPathResolver {
    * 
    * @param annoType
    *          the class of an annotation
-   * @return founded {@link RoutingPath}
+   * @return an immutable list of founded {@link RoutingPath}
    */
   public List<RoutingPath> findByAnnotationType(
       final Class<? extends Annotation> annoType) {
-    List<RoutingPath> paths = new ArrayList<>(routingPaths);
-
-    Iterables.removeIf(paths, item -> {
-      return !Iterables.any(item.getClassAnnotations(),
-          ca -> annoType.equals(ca.annotationType()))
-          && !Iterables.any(item.getMethodAnnotations(),
-              ma -> annoType.equals(ma.annotationType()));
-    });
+    AnnotationIndex index = state.annotationIndex;
+    if (!metricsEnabled) return index.findByAnnotationType(annoType);
 
+    long startTime = System.nanoTime();
+    List<RoutingPath> paths = index.findByAnnotationType(annoType);
+    recordLookup(Lookup.FIND_BY_ANNOTATION_TYPE, startTime, paths, null,
+        null);
     return paths;
   }
 
@@ -161,15 +461,17 @@ public final class RoutingPathResolver {
    * 
    * @param annoType
    *          the class of an annotation
-   * @return founded {@link RoutingPath}
+   * @return an immutable list of founded {@link RoutingPath}
    */
   public List<RoutingPath> findByClassAnnotationType(
       final Class<? extends Annotation> annoType) {
-    List<RoutingPath> paths = new ArrayList<>(routingPaths);
-
-    Iterables.removeIf(paths, rp -> !Iterables.any(rp.getClassAnnotations(),
-        ca -> annoType.equals(ca.annotationType())));
+    AnnotationIndex index = state.annotationIndex;
+    if (!metricsEnabled) return index.findByClassAnnotationType(annoType);
 
+    long startTime = System.nanoTime();
+    List<RoutingPath> paths = index.findByClassAnnotationType(annoType);
+    recordLookup(Lookup.FIND_BY_CLASS_ANNOTATION_TYPE, startTime, paths, null,
+        null);
     return paths;
   }
 
@@ -179,15 +481,17 @@ public final class RoutingPathResolver {
    * 
    * @param annoType
    *          the class of an annotation
-   * @return founded {@link RoutingPath}
+   * @return an immutable list of founded {@link RoutingPath}
    */
   public List<RoutingPath> findByParameterAnnotationType(
       final Class<? extends Annotation> annoType) {
-    List<RoutingPath> paths = new ArrayList<>(routingPaths);
-
-    Iterables.removeIf(paths, rp -> !Iterables.any(rp.getParameterAnnotations(),
-        pas -> Iterables.any(pas, pa -> annoType.equals(pa.annotationType()))));
+    AnnotationIndex index = state.annotationIndex;
+    if (!metricsEnabled) return index.findByParameterAnnotationType(annoType);
 
+    long startTime = System.nanoTime();
+    List<RoutingPath> paths = index.findByParameterAnnotationType(annoType);
+    recordLookup(Lookup.FIND_BY_PARAMETER_ANNOTATION_TYPE, startTime, paths,
+        null, null);
     return paths;
   }
 
@@ -197,15 +501,17 @@ public final class RoutingPathResolver {
    * 
    * @param annoType
    *          the class of an annotation
-   * @return founded {@link RoutingPath}
+   * @return an immutable list of founded {@link RoutingPath}
    */
   public List<RoutingPath> findByMethodAnnotationType(
       final Class<? extends Annotation> annoType) {
-    List<RoutingPath> paths = new ArrayList<>(routingPaths);
-
-    Iterables.removeIf(paths, rp -> !Iterables.any(rp.getMethodAnnotations(),
-        ma -> annoType.equals(ma.annotationType())));
+    AnnotationIndex index = state.annotationIndex;
+    if (!metricsEnabled) return index.findByMethodAnnotationType(annoType);
 
+    long startTime = System.nanoTime();
+    List<RoutingPath> paths = index.findByMethodAnnotationType(annoType);
+    recordLookup(Lookup.FIND_BY_METHOD_ANNOTATION_TYPE, startTime, paths, null,
+        null);
     return paths;
   }
 
@@ -220,45 +526,531 @@ public final class RoutingPathResolver {
    */
   public RoutingPath findByRequestPathAndMethod(String requestPath,
       RequestMethod method) {
-    for (RoutingPath routingPath : routingPaths) {
-      if (routingPath.getPath().equals(requestPath)
-          && routingPath.getMethod().equals(method))
-        return routingPath;
+    if (!metricsEnabled) return findFirst(this.state, requestPath, method);
+
+    long startTime = System.nanoTime();
+    RoutingState state = this.state;
+    RoutingPath routingPath = findFirst(state, requestPath, method);
+    recordLookup(Lookup.FIND_BY_REQUEST_PATH_AND_METHOD, startTime, routingPath,
+        state.routingTables.get(method), requestPath, 0, requestPath.length());
+    return routingPath;
+  }
+
+  private RoutingPath findFirst(RoutingState state, String requestPath,
+      RequestMethod method) {
+    Cache<Entry<String, RequestMethod>, List<RoutingPath>> cache = state.cache;
+    if (cache == null) {
+      RoutingTable table = state.routingTables.get(method);
+      return table == null ? null
+          : table.findFirst(requestPath, 0, requestPath.length());
     }
 
-    for (RoutingPath routingPath : routingPaths) {
-      if (requestPath.matches(routingPath.getRegexPath().pattern())
-          && routingPath.getMethod().equals(method))
-        return routingPath;
+    Entry<String, RequestMethod> key = Maps.immutableEntry(requestPath, method);
+    List<RoutingPath> paths = cache.getIfPresent(key);
+    if (paths == null) {
+      RoutingTable table = state.routingTables.get(method);
+      RoutingPath routingPath = table == null ? null
+          : table.findFirst(requestPath, 0, requestPath.length());
+      paths = routingPath == null ? ImmutableList.of()
+          : ImmutableList.of(routingPath);
+      cache.put(key, paths);
     }
+    return paths.isEmpty() ? null : paths.get(0);
+  }
 
-    return null;
+  /**
+   * Finds the most specific {@link RoutingPath} by given path and request
+   * method. A {@link RoutingPath} whose path equals to the request path wins
+   * first, otherwise the matched {@link RoutingPath}s are ranked like the
+   * AntPatternComparator of Spring: fewer path variables and wildcards, more
+   * literal segments and longer paths are more specific. The ranks are
+   * precomputed, so no sorting is needed while finding.
+   * 
+   * @param requestPath
+   *          to be found
+   * @param method
+   *          to be matched
+   * @return founded {@link RoutingPath}
+   */
+  public RoutingPath findBestMatchByRequestPathAndMethod(String requestPath,
+      RequestMethod method) {
+    return findBestMatchByRequestPathAndMethod(requestPath, 0,
+        requestPath.length(), method);
   }
 
   /**
-   * Finds {@link RoutingPath}s by given path.
+   * Finds {@link RoutingPath}s by the given range of a request path and request
+   * method, ex: the path part of a request URI without its context path and
+   * query string. No object is created while finding, the resolution cache is
+   * not used either.
+   * 
+   * @param requestPath
+   *          to be found
+   * @param start
+   *          the start index of the request path, inclusive
+   * @param end
+   *          the end index of the request path, exclusive
+   * @param method
+   *          to be matched
+   * @return founded {@link RoutingPath}
+   */
+  public RoutingPath findByRequestPathAndMethod(CharSequence requestPath,
+      int start, int end, RequestMethod method) {
+    checkPositionIndexes(start, end, requestPath.length());
+    RoutingTable table = state.routingTables.get(method);
+    if (!metricsEnabled)
+      return table == null ? null : table.findFirst(requestPath, start, end);
+
+    long startTime = System.nanoTime();
+    RoutingPath routingPath =
+        table == null ? null : table.findFirst(requestPath, start, end);
+    recordLookup(Lookup.FIND_BY_REQUEST_PATH_AND_METHOD, startTime,
+        routingPath, table, requestPath, start, end);
+    return routingPath;
+  }
+
+  /**
+   * Finds {@link RoutingPath}s by a collection of request paths and request
+   * methods. The results are in the order of given requests and null stands
+   * for a request without any {@link RoutingPath}. All requests are resolved
+   * against the same routing state, the resolution cache is not used.
+   * 
+   * @param requests
+   *          pairs of a request path and a request method
+   * @return an unmodifiable list of founded {@link RoutingPath}
+   */
+  public List<RoutingPath> findByRequestPathsAndMethods(
+      Collection<? extends Entry<? extends CharSequence, RequestMethod>> requests) {
+    return findByRequestPathsAndMethods(requests, false);
+  }
+
+  /**
+   * Finds {@link RoutingPath}s by a collection of request paths and request
+   * methods. The results are in the order of given requests and null stands
+   * for a request without any {@link RoutingPath}. All requests are resolved
+   * against the same immutable routing state without any lock, so a parallel
+   * lookup splits the requests across the common
+   * {@link java.util.concurrent.ForkJoinPool}, or the one it is called from,
+   * and each result is written into its own slot.
+   * 
+   * @param requests
+   *          pairs of a request path and a request method
+   * @param parallel
+   *          true if the requests are resolved in parallel
+   * @return an unmodifiable list of founded {@link RoutingPath}
+   */
+  public List<RoutingPath> findByRequestPathsAndMethods(
+      Collection<? extends Entry<? extends CharSequence, RequestMethod>> requests,
+      boolean parallel) {
+    RoutingState state = this.state;
+    Entry<?, ?>[] entries = requests.toArray(new Entry<?, ?>[0]);
+    RoutingPath[] routingPaths = new RoutingPath[entries.length];
+
+    IntStream indices = IntStream.range(0, entries.length);
+    (parallel ? indices.parallel() : indices).forEach(i -> {
+      @SuppressWarnings("unchecked")
+      Entry<? extends CharSequence, RequestMethod> request =
+          (Entry<? extends CharSequence, RequestMethod>) entries[i];
+      routingPaths[i] = findFirst(state, request);
+    });
+    return Collections.unmodifiableList(Arrays.asList(routingPaths));
+  }
+
+  /**
+   * Finds {@link RoutingPath}s by a {@link Stream} of request paths and request
+   * methods lazily. The returned {@link Stream} keeps the encounter order and
+   * the parallelism of given {@link Stream}, and null stands for a request
+   * without any {@link RoutingPath}. All requests are resolved against the
+   * routing state of the time this method is called, the resolution cache is
+   * not used.
+   * 
+   * @param requests
+   *          a {@link Stream} of pairs of a request path and a request method
+   * @return a {@link Stream} of founded {@link RoutingPath}
+   */
+  public Stream<RoutingPath> findByRequestPathsAndMethods(
+      Stream<? extends Entry<? extends CharSequence, RequestMethod>> requests) {
+    RoutingState state = this.state;
+    return requests.map(request -> findFirst(state, request));
+  }
+
+  private RoutingPath findFirst(RoutingState state,
+      Entry<? extends CharSequence, RequestMethod> request) {
+    CharSequence requestPath = request.getKey();
+    RoutingTable table = state.routingTables.get(request.getValue());
+    if (!metricsEnabled) return table == null ? null
+        : table.findFirst(requestPath, 0, requestPath.length());
+
+    long startTime = System.nanoTime();
+    RoutingPath routingPath = table == null ? null
+        : table.findFirst(requestPath, 0, requestPath.length());
+    recordLookup(Lookup.FIND_BY_REQUEST_PATHS_AND_METHODS, startTime,
+        routingPath, table, requestPath, 0, requestPath.length());
+    return routingPath;
+  }
+
+  /**
+   * Finds the most specific {@link RoutingPath} by the given range of a request
+   * path and request method. No object is created while finding.
    * 
    * @param requestPath
    *          to be found
+   * @param start
+   *          the start index of the request path, inclusive
+   * @param end
+   *          the end index of the request path, exclusive
+   * @param method
+   *          to be matched
    * @return founded {@link RoutingPath}
+   * @see #findBestMatchByRequestPathAndMethod(String, RequestMethod)
+   */
+  public RoutingPath findBestMatchByRequestPathAndMethod(
+      CharSequence requestPath, int start, int end, RequestMethod method) {
+    checkPositionIndexes(start, end, requestPath.length());
+    RoutingTable table = state.routingTables.get(method);
+    if (!metricsEnabled)
+      return table == null ? null : table.findBest(requestPath, start, end);
+
+    long startTime = System.nanoTime();
+    RoutingPath routingPath =
+        table == null ? null : table.findBest(requestPath, start, end);
+    recordLookup(Lookup.FIND_BEST_MATCH_BY_REQUEST_PATH_AND_METHOD, startTime,
+        routingPath, table, requestPath, start, end);
+    return routingPath;
+  }
+
+  /**
+   * Matches a {@link RoutingPath} by given path and request method like
+   * {@link #findByRequestPathAndMethod(String, RequestMethod)} and captures
+   * its path variables in the same pass, so the request path doesn't need to
+   * be parsed again. The resolution cache is not used.
+   * 
+   * @param requestPath
+   *          to be matched
+   * @param method
+   *          to be matched
+   * @return a {@link RoutingMatch} or null if no {@link RoutingPath} is found
+   */
+  public RoutingMatch matchByRequestPathAndMethod(String requestPath,
+      RequestMethod method) {
+    return matchByRequestPathAndMethod(requestPath, 0, requestPath.length(),
+        method);
+  }
+
+  /**
+   * Matches a {@link RoutingPath} by the given range of a request path and
+   * request method and captures its path variables.
+   * 
+   * @param requestPath
+   *          to be matched
+   * @param start
+   *          the start index of the request path, inclusive
+   * @param end
+   *          the end index of the request path, exclusive
+   * @param method
+   *          to be matched
+   * @return a {@link RoutingMatch} or null if no {@link RoutingPath} is found
+   * @see #matchByRequestPathAndMethod(String, RequestMethod)
+   */
+  public RoutingMatch matchByRequestPathAndMethod(CharSequence requestPath,
+      int start, int end, RequestMethod method) {
+    checkPositionIndexes(start, end, requestPath.length());
+    RoutingTable table = state.routingTables.get(method);
+    if (!metricsEnabled)
+      return table == null ? null : table.matchFirst(requestPath, start, end);
+
+    long startTime = System.nanoTime();
+    RoutingMatch match =
+        table == null ? null : table.matchFirst(requestPath, start, end);
+    recordLookup(Lookup.MATCH_BY_REQUEST_PATH_AND_METHOD, startTime,
+        match == null ? null : match.getRoutingPath(), table, requestPath,
+        start, end);
+    return match;
+  }
+
+  /**
+   * Matches the most specific {@link RoutingPath} by given path and request
+   * method like
+   * {@link #findBestMatchByRequestPathAndMethod(String, RequestMethod)} and
+   * captures its path variables in the same pass.
+   * 
+   * @param requestPath
+   *          to be matched
+   * @param method
+   *          to be matched
+   * @return a {@link RoutingMatch} or null if no {@link RoutingPath} is found
+   */
+  public RoutingMatch matchBestByRequestPathAndMethod(String requestPath,
+      RequestMethod method) {
+    return matchBestByRequestPathAndMethod(requestPath, 0,
+        requestPath.length(), method);
+  }
+
+  /**
+   * Matches the most specific {@link RoutingPath} by the given range of a
+   * request path and request method and captures its path variables.
+   * 
+   * @param requestPath
+   *          to be matched
+   * @param start
+   *          the start index of the request path, inclusive
+   * @param end
+   *          the end index of the request path, exclusive
+   * @param method
+   *          to be matched
+   * @return a {@link RoutingMatch} or null if no {@link RoutingPath} is found
+   * @see #matchBestByRequestPathAndMethod(String, RequestMethod)
+   */
+  public RoutingMatch matchBestByRequestPathAndMethod(
+      CharSequence requestPath, int start, int end, RequestMethod method) {
+    checkPositionIndexes(start, end, requestPath.length());
+    RoutingTable table = state.routingTables.get(method);
+    if (!metricsEnabled)
+      return table == null ? null : table.matchBest(requestPath, start, end);
+
+    long startTime = System.nanoTime();
+    RoutingMatch match =
+        table == null ? null : table.matchBest(requestPath, start, end);
+    recordLookup(Lookup.MATCH_BEST_BY_REQUEST_PATH_AND_METHOD, startTime,
+        match == null ? null : match.getRoutingPath(), table, requestPath,
+        start, end);
+    return match;
+  }
+
+  /**
+   * Finds {@link RoutingPath}s by given path.
+   * 
+   * @param requestPath
+   *          to be found
+   * @return an immutable list of founded {@link RoutingPath}
    */
   public List<RoutingPath> findByRequestPath(String requestPath) {
-    List<RoutingPath> paths = new ArrayList<>();
+    if (!metricsEnabled) return findAll(this.state, requestPath);
 
-    for (RoutingPath routingPath : routingPaths) {
-      if (routingPath.getPath().equals(requestPath)) {
-        paths.add(routingPath);
-      } else if (requestPath.matches(routingPath.getRegexPath().pattern())) {
-        paths.add(routingPath);
+    long startTime = System.nanoTime();
+    RoutingState state = this.state;
+    List<RoutingPath> paths = findAll(state, requestPath);
+    recordLookup(Lookup.FIND_BY_REQUEST_PATH, startTime, paths,
+        state.routingTable, requestPath);
+    return paths;
+  }
+
+  private List<RoutingPath> findAll(RoutingState state, String requestPath) {
+    Cache<Entry<String, RequestMethod>, List<RoutingPath>> cache = state.cache;
+    if (cache == null) return state.routingTable.findAll(requestPath);
+
+    Entry<String, RequestMethod> key = Maps.immutableEntry(requestPath, null);
+    List<RoutingPath> paths = cache.getIfPresent(key);
+    if (paths == null) {
+      paths = state.routingTable.findAll(requestPath);
+      cache.put(key, paths);
+    }
+    return paths;
+  }
+
+  /**
+   * Returns the statistics of the resolution cache. All counts are zero if the
+   * cache is not enabled by {@link RoutingPathResolverOptions}. The statistics
+   * start over whenever the routing state is replaced.
+   * 
+   * @return the {@link CacheStats} of the resolution cache
+   */
+  public CacheStats getCacheStats() {
+    Cache<Entry<String, RequestMethod>, List<RoutingPath>> cache = state.cache;
+    return cache == null ? new CacheStats(0, 0, 0, 0, 0, 0) : cache.stats();
+  }
+
+  // the routing table tells whether it resolves the request path by the
+  // literal path index, even if the result is cached
+  private void recordLookup(Lookup lookup, long startTime,
+      RoutingPath routingPath, RoutingTable table, CharSequence requestPath,
+      int start, int end) {
+    long nanos = System.nanoTime() - startTime;
+    metrics.recordLookup(lookup, routingPath == null ? LookupResult.MISS
+        : table.isLiteral(requestPath, start, end) ? LookupResult.LITERAL_HIT
+            : LookupResult.REGEX_HIT,
+        nanos);
+  }
+
+  // the routing table is null if found by an annotation type
+  private void recordLookup(Lookup lookup, long startTime,
+      List<RoutingPath> routingPaths, RoutingTable table, String requestPath) {
+    long nanos = System.nanoTime() - startTime;
+    LookupResult result = routingPaths.isEmpty() ? LookupResult.MISS
+        : table == null ? LookupResult.INDEX_HIT
+            : table.isLiteral(requestPath, 0, requestPath.length())
+                ? LookupResult.LITERAL_HIT
+                : LookupResult.REGEX_HIT;
+    metrics.recordLookup(lookup, result, nanos);
+  }
+
+  private static List<Class<?>> getControllerClasses(ApplicationContext appCtx,
+      RoutingMetrics metrics, String... basePackages) {
+    long startTime = System.nanoTime();
+    Map<String, Object> beans = appCtx.getBeansWithAnnotation(Controller.class);
+    beans.putAll(appCtx.getBeansWithAnnotation(RestController.class));
+    retainBeansByPackageNames(beans, basePackages);
+
+    List<Class<?>> controllers = new ArrayList<>();
+    for (Object bean : beans.values()) {
+      controllers.add(bean.getClass());
+    }
+    metrics.recordBuildPhase(BuildPhase.BEAN_DISCOVERY,
+        System.nanoTime() - startTime);
+    return controllers;
+  }
+
+  private static List<Method> getMappingMethods(Class<?> controller) {
+    return ControllerMetadata.of(controller).getMappingMethods();
+  }
+
+  private Map<Class<?>, List<Entry<RoutingEntry, Method>>> scanRoutingEntries(
+      List<Class<?>> controllers) {
+    List<Class<?>> distinctControllers =
+        controllers.stream().distinct().collect(Collectors.toList());
+    List<CompletableFuture<List<Entry<RoutingEntry, Method>>>> beanEntries =
+        new ArrayList<>();
+    for (Class<?> controller : distinctControllers) {
+      beanEntries.add(supply(() -> computeRoutingEntries(controller),
+          options.getBuildExecutor()));
+    }
+
+    // merged in the controller order, so a parallel build keeps the same order
+    Map<Class<?>, List<Entry<RoutingEntry, Method>>> routingEntries =
+        new LinkedHashMap<>();
+    for (int i = 0; i < distinctControllers.size(); i++) {
+      routingEntries.put(distinctControllers.get(i), join(beanEntries.get(i)));
+    }
+    return routingEntries;
+  }
+
+  // returns null if the snapshot is stale
+  private Map<Class<?>, List<RoutingPath>> restoreRoutingPaths(
+      List<RoutingSnapshot.Route> snapshot, List<Class<?>> controllers) {
+    Map<String, Class<?>> controllersByName = new LinkedHashMap<>();
+    for (Class<?> controller : controllers) {
+      controllersByName.put(controller.getName(), controller);
+    }
+
+    Map<MappingMethod, Method> methods = new HashMap<>();
+    Map<Class<?>, List<RoutingPath>> restoredPaths = new LinkedHashMap<>();
+    for (RoutingSnapshot.Route route : snapshot) {
+      Class<?> controller = controllersByName.get(route.controllerName);
+      // the place holders may be changed
+      if (controller == null || !computePath(PathTemplate.parse(route.rawPath))
+          .getTemplate().equals(route.path))
+        return null;
+      // an inherited mapping method is declared by a super type
+      Class<?> declaringClass = TypeToken.of(controller).getTypes().rawTypes()
+          .stream().filter(type -> type.getName()
+              .equals(route.mappingMethod.getClassName()))
+          .findFirst().orElse(null);
+      if (declaringClass == null) return null;
+
+      Method method;
+      try {
+        method = methods.computeIfAbsent(route.mappingMethod,
+            mappingMethod -> mappingMethod.toMethod(declaringClass));
+      } catch (IllegalStateException e) {
+        return null;
       }
+      ControllerMetadata metadata = ControllerMetadata.of(controller);
+      MethodMetadata methodMetadata = metadata.getMethod(method);
+      RoutingEntry entry = newRoutingEntry(route.requestMethods,
+          route.rawPath, route.path, route.regex,
+          metadata.getClassAnnotations(), methodMetadata.methodAnnotations,
+          methodMetadata.parameterAnnotations);
+      restoredPaths.computeIfAbsent(controller, k -> new ArrayList<>())
+          .addAll(entry.toRoutingPaths());
     }
+    return restoredPaths;
+  }
 
-    return paths;
+  private List<Entry<RoutingEntry, Method>> computeRoutingEntries(
+      Class<?> controller) {
+    List<HandlerMapping> mappings =
+        handlerMappings == null ? null : handlerMappings.get(controller);
+    if (mappings != null) return computeRoutingEntries(controller, mappings);
+
+    long startTime = System.nanoTime();
+    long placeholderNanos = 0;
+    long regexNanos = 0;
+    List<Entry<RoutingEntry, Method>> routingEntries = new ArrayList<>();
+
+    ControllerMetadata metadata = ControllerMetadata.of(controller);
+    for (Method method : mappingMethods.apply(controller)) {
+      // shared by all RoutingEntries of the controller and the method
+      MethodMetadata methodMetadata = metadata.getMethod(method);
+      if (methodMetadata.mapping == null) continue;
+
+      for (Entry<String, Set<RequestMethod>> rawPathAndMethods
+          : computeRawPaths(metadata.getClassMapping(),
+              methodMetadata.mapping)) {
+        String rawPath = rawPathAndMethods.getKey();
+        long placeholderStart = System.nanoTime();
+        PathTemplate template = computePath(PathTemplate.parse(rawPath));
+        long regexStart = System.nanoTime();
+        String regexPath = template.toRegex();
+        RoutingEntry entry = newRoutingEntry(rawPathAndMethods.getValue(),
+            rawPath, template.getTemplate(), regexPath,
+            metadata.getClassAnnotations(), methodMetadata.methodAnnotations,
+            methodMetadata.parameterAnnotations);
+        placeholderNanos += regexStart - placeholderStart;
+        regexNanos += System.nanoTime() - regexStart;
+        routingEntries.add(Maps.immutableEntry(entry, method));
+      }
+    }
+
+    metrics.recordBuildPhase(BuildPhase.METHOD_SCAN,
+        System.nanoTime() - startTime - placeholderNanos - regexNanos);
+    metrics.recordBuildPhase(BuildPhase.PLACEHOLDER_RESOLUTION,
+        placeholderNanos);
+    metrics.recordBuildPhase(BuildPhase.REGEX_COMPILATION, regexNanos);
+    return routingEntries;
   }
 
-  private List<Entry<String, RequestMethod>> computeRawPaths(
-      RequestMapping classMapping, Annotation methodMapping) {
-    List<Entry<String, RequestMethod>> rawPathsAndMethods = new ArrayList<>();
+  // the paths are combined and resolved by Spring MVC already
+  private List<Entry<RoutingEntry, Method>> computeRoutingEntries(
+      Class<?> controller, List<HandlerMapping> mappings) {
+    long startTime = System.nanoTime();
+    long regexNanos = 0;
+    List<Entry<RoutingEntry, Method>> routingEntries = new ArrayList<>();
+
+    ControllerMetadata metadata = ControllerMetadata.of(controller);
+    for (HandlerMapping mapping : mappings) {
+      // shared by all RoutingEntries of the controller and the method
+      MethodMetadata methodMetadata = metadata.getMethod(mapping.method);
+      for (String path : mapping.paths) {
+        long regexStart = System.nanoTime();
+        String regexPath = PathTemplate.parse(path).toRegex();
+        RoutingEntry entry = newRoutingEntry(mapping.requestMethods, path,
+            path, regexPath, metadata.getClassAnnotations(),
+            methodMetadata.methodAnnotations,
+            methodMetadata.parameterAnnotations);
+        regexNanos += System.nanoTime() - regexStart;
+        routingEntries.add(Maps.immutableEntry(entry, mapping.method));
+      }
+    }
+
+    metrics.recordBuildPhase(BuildPhase.METHOD_SCAN,
+        System.nanoTime() - startTime - regexNanos);
+    metrics.recordBuildPhase(BuildPhase.REGEX_COMPILATION, regexNanos);
+    return routingEntries;
+  }
+
+  private RoutingEntry newRoutingEntry(Set<RequestMethod> requestMethods,
+      String rawPath, String path, String regexPath,
+      List<Annotation> classAnnotations, List<Annotation> methodAnnotations,
+      List<List<Annotation>> parameterAnnotations) {
+    return new RoutingEntry(requestMethods, rawPath, path, regexPath,
+        options.isLazyPatternsEnabled() ? null : Pattern.compile(regexPath),
+        classAnnotations, methodAnnotations, parameterAnnotations);
+  }
+
+  private List<Entry<String, Set<RequestMethod>>> computeRawPaths(
+      RequestMapping classMapping, RequestMapping methodMapping) {
+    List<Entry<String, Set<RequestMethod>>> rawPathsAndMethods =
+        new ArrayList<>();
 
     List<String> prefixPaths =
         classMapping == null ? new ArrayList<>(Arrays.asList(""))
@@ -267,58 +1059,12 @@ public final class RoutingPathResolver {
                 : new ArrayList<>(ImmutableSet.copyOf(classMapping.path()));
     if (prefixPaths.isEmpty()) prefixPaths.add("");
 
-    List<String> suffixPaths = new ArrayList<>();
-    List<RequestMethod> requestMethods = new ArrayList<>();
-    if (methodMapping.annotationType().equals(RequestMapping.class)) {
-      suffixPaths = ((RequestMapping) methodMapping).value().length != 0
-          ? new ArrayList<>(
-              ImmutableSet.copyOf(((RequestMapping) methodMapping).value()))
-          : new ArrayList<>(
-              ImmutableSet.copyOf(((RequestMapping) methodMapping).path()));
-
-      requestMethods
-          .addAll(Arrays.asList(((RequestMapping) methodMapping).method()));
-    } else if (methodMapping.annotationType().equals(GetMapping.class)) {
-      suffixPaths = ((GetMapping) methodMapping).value().length != 0
-          ? new ArrayList<>(
-              ImmutableSet.copyOf(((GetMapping) methodMapping).value()))
-          : new ArrayList<>(
-              ImmutableSet.copyOf(((GetMapping) methodMapping).path()));
-
-      requestMethods.add(RequestMethod.GET);
-    } else if (methodMapping.annotationType().equals(PostMapping.class)) {
-      suffixPaths = ((PostMapping) methodMapping).value().length != 0
-          ? new ArrayList<>(
-              ImmutableSet.copyOf(((PostMapping) methodMapping).value()))
-          : new ArrayList<>(
-              ImmutableSet.copyOf(((PostMapping) methodMapping).path()));
-
-      requestMethods.add(RequestMethod.POST);
-    } else if (methodMapping.annotationType().equals(DeleteMapping.class)) {
-      suffixPaths = ((DeleteMapping) methodMapping).value().length != 0
-          ? new ArrayList<>(
-              ImmutableSet.copyOf(((DeleteMapping) methodMapping).value()))
-          : new ArrayList<>(
-              ImmutableSet.copyOf(((DeleteMapping) methodMapping).path()));
-
-      requestMethods.add(RequestMethod.DELETE);
-    } else if (methodMapping.annotationType().equals(PutMapping.class)) {
-      suffixPaths = ((PutMapping) methodMapping).value().length != 0
-          ? new ArrayList<>(
-              ImmutableSet.copyOf(((PutMapping) methodMapping).value()))
-          : new ArrayList<>(
-              ImmutableSet.copyOf(((PutMapping) methodMapping).path()));
-
-      requestMethods.add(RequestMethod.PUT);
-    } else if (methodMapping.annotationType().equals(PatchMapping.class)) {
-      suffixPaths = ((PatchMapping) methodMapping).value().length != 0
-          ? new ArrayList<>(
-              ImmutableSet.copyOf(((PatchMapping) methodMapping).value()))
-          : new ArrayList<>(
-              ImmutableSet.copyOf(((PatchMapping) methodMapping).path()));
-
-      requestMethods.add(RequestMethod.PATCH);
-    }
+    // composed mapping annotations are merged into a RequestMapping already
+    List<String> suffixPaths = methodMapping.value().length != 0
+        ? new ArrayList<>(ImmutableSet.copyOf(methodMapping.value()))
+        : new ArrayList<>(ImmutableSet.copyOf(methodMapping.path()));
+    List<RequestMethod> requestMethods =
+        Arrays.asList(methodMapping.method());
     if (suffixPaths.isEmpty()) suffixPaths.add("");
 
     while (!prefixPaths.isEmpty()) {
@@ -327,99 +1073,67 @@ public final class RoutingPathResolver {
       while (!suffixPaths.isEmpty()) {
         String suffixPath = suffixPaths.remove(0);
 
-        if (requestMethods.isEmpty()) {
-          for (RequestMethod m : RequestMethod.values()) {
-            rawPathsAndMethods.add(Maps.immutableEntry(
-                PathUtils.joinPaths(prefixPath, suffixPath), m));
-          }
-        } else {
-          for (RequestMethod m : requestMethods) {
-            rawPathsAndMethods.add(Maps.immutableEntry(
-                PathUtils.joinPaths(prefixPath, suffixPath), m));
-          }
-        }
+        rawPathsAndMethods.add(Maps.immutableEntry(
+            PathUtils.joinPaths(prefixPath, suffixPath),
+            requestMethods.isEmpty() ? EnumSet.allOf(RequestMethod.class)
+                : EnumSet.copyOf(requestMethods)));
       }
     }
 
     return rawPathsAndMethods;
   }
 
-  private String computeRegexPath(String path) {
-    path = Regexs.escapeSpecialCharacters(path, PLACEHOLDER, PATH_VAR, ANT_AA,
-        ANT_A, ANT_Q);
-    Matcher m = PATH_VAR.matcher(path);
-    while (m.find()) {
-      String match = m.group();
-      path = path.replaceFirst(Pattern.quote(match), "[^/]+");
-    }
-    m = ANT_AA.matcher(path);
-    while (m.find()) {
-      String match = m.group();
-      path = path.replaceFirst(Pattern.quote(match), ".\"");
-    }
-    m = ANT_A.matcher(path);
-    while (m.find()) {
-      String match = m.group();
-      path = path.replaceFirst(Pattern.quote(match), "[^/]*");
-    }
-    m = ANT_Q.matcher(path);
-    while (m.find()) {
-      String match = m.group();
-      path = path.replaceFirst(Pattern.quote(match), ".");
-    }
-    path = path.replaceAll(Pattern.quote("\""), "*");
-
-    // the first slash of an URL can be omitted
-    path = path.startsWith("/") ? path = "/?" + path.substring(1) : "/?" + path;
-    // the last slash of an URL is optional if user not mentions
-    if (!path.endsWith("/")) path = path + "/?";
-
-    return path;
-  }
-
-  private String computePath(String rawPath) {
-    String path = rawPath;
-    Matcher m = PLACEHOLDER.matcher(rawPath);
-    while (m.find()) {
-      String placeholder = m.group();
-      String trimmedPlaceholder =
-          placeholder.substring(2, placeholder.length() - 1);
-      String[] keyAndDefault = trimmedPlaceholder.split(":");
-      String key = keyAndDefault[0];
-      String deFault = "";
-      if (keyAndDefault.length > 1) deFault = keyAndDefault[1];
-      path = path.replaceFirst(Pattern.quote(placeholder),
-          env.getProperty(key, deFault));
-    }
-    return path;
+  private PathTemplate computePath(PathTemplate rawTemplate) {
+    return rawTemplate
+        .resolve((key, deFault) -> env.getProperty(key, deFault));
+  }
+
+  private static Map<Class<?>, List<HandlerMapping>> getHandlerMappings(
+      ApplicationContext appCtx, RoutingMetrics metrics,
+      String... basePackages) {
+    long startTime = System.nanoTime();
+    Map<Class<?>, List<HandlerMapping>> handlerMappings =
+        HandlerMethodRegistry.read(appCtx);
+    handlerMappings.keySet()
+        .removeIf(controller -> !inPackages(controller, basePackages));
+    metrics.recordBuildPhase(BuildPhase.BEAN_DISCOVERY,
+        System.nanoTime() - startTime);
+    return handlerMappings;
   }
 
-  private void retainBeansByPackageNames(Map<String, Object> beans,
+  private static void retainBeansByPackageNames(Map<String, Object> beans,
       String... basePackages) {
     Iterator<Object> beansIter = beans.values().iterator();
     while (beansIter.hasNext()) {
-      String beanPackage = beansIter.next().getClass().getPackage().getName();
-      boolean isKeep = false;
-      for (String packageName : basePackages) {
-        if (beanPackage.equals(packageName)
-            || beanPackage.startsWith(packageName + ".")) {
-          isKeep = true;
-        }
-      }
-      if (!isKeep) beansIter.remove();
+      if (!inPackages(beansIter.next().getClass(), basePackages))
+        beansIter.remove();
     }
   }
 
-  private List<Method> getMethodsListWithAnnotation(final Class<?> cls,
-      final Class<? extends Annotation> annotationCls) {
-    Method[] allMethods = cls.getDeclaredMethods();
-    List<Method> annotatedMethods = new ArrayList<Method>();
-    for (Method method : allMethods) {
-      if (method.getAnnotation(annotationCls) != null) {
-        annotatedMethods.add(method);
+  private static boolean inPackages(Class<?> cls, String... basePackages) {
+    String clsPackage = cls.getPackage().getName();
+    for (String packageName : basePackages) {
+      if (clsPackage.equals(packageName)
+          || clsPackage.startsWith(packageName + ".")) {
+        return true;
       }
     }
-    return annotatedMethods;
+    return false;
+  }
+
+  private static <T> CompletableFuture<T> supply(Supplier<T> supplier,
+      Executor executor) {
+    return executor == null ? CompletableFuture.completedFuture(supplier.get())
+        : CompletableFuture.supplyAsync(supplier, executor);
+  }
+
+  private static <T> T join(CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw e;
+    }
   }
 
 }
@@ -0,0 +1,360 @@
+/*
+ *
+ * Copyright 2020 Wei-Ming Wu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+package com.github.wnameless.spring.routing.resolver;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import org.springframework.web.bind.annotation.RequestMethod;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.cache.CacheBuilderSpec;
+
+/**
+ *
+ * {@link RoutingPathResolverOptions} holds the optional features of a
+ * {@link RoutingPathResolver}. It is an immutable class, every
+ * <i>with</i> method returns a new copy.
+ *
+ */
+public final class RoutingPathResolverOptions {
+
+  private static final RoutingPathResolverOptions DEFAULTS =
+      new RoutingPathResolverOptions(null, false, null, false, null,
+          RoutingMetrics.NOOP, null, null, null);
+
+  private final CacheBuilderSpec cacheSpec;
+  private final boolean automaton;
+  private final Executor buildExecutor;
+  private final boolean lazyPatterns;
+  private final Path snapshotFile;
+  private final RoutingMetrics metrics;
+  private final RequestPathNormalizer normalizer;
+  private final Duration adaptiveOrderingInterval;
+  private final Executor adaptiveOrderingExecutor;
+
+  private RoutingPathResolverOptions(CacheBuilderSpec cacheSpec,
+      boolean automaton, Executor buildExecutor, boolean lazyPatterns,
+      Path snapshotFile, RoutingMetrics metrics,
+      RequestPathNormalizer normalizer, Duration adaptiveOrderingInterval,
+      Executor adaptiveOrderingExecutor) {
+    this.cacheSpec = cacheSpec;
+    this.automaton = automaton;
+    this.buildExecutor = buildExecutor;
+    this.lazyPatterns = lazyPatterns;
+    this.snapshotFile = snapshotFile;
+    this.metrics = metrics;
+    this.normalizer = normalizer;
+    this.adaptiveOrderingInterval = adaptiveOrderingInterval;
+    this.adaptiveOrderingExecutor = adaptiveOrderingExecutor;
+  }
+
+  /**
+   * Returns the default {@link RoutingPathResolverOptions} which enables none
+   * of the optional features.
+   *
+   * @return the default {@link RoutingPathResolverOptions}
+   */
+  public static RoutingPathResolverOptions defaults() {
+    return DEFAULTS;
+  }
+
+  /**
+   * Returns a copy of this options which caches the results of
+   * {@link RoutingPathResolver#findByRequestPath(String)} and
+   * {@link RoutingPathResolver#findByRequestPathAndMethod(String, RequestMethod)}
+   * in a least recently used cache with given maximum size.
+   *
+   * @param maximumSize
+   *          the maximum number of cached request paths
+   * @return a new {@link RoutingPathResolverOptions}
+   */
+  public RoutingPathResolverOptions withCache(long maximumSize) {
+    checkArgument(maximumSize >= 0, "maximumSize must not be negative");
+    return withCache("maximumSize=" + maximumSize);
+  }
+
+  /**
+   * Returns a copy of this options which caches the results of
+   * {@link RoutingPathResolver#findByRequestPath(String)} and
+   * {@link RoutingPathResolver#findByRequestPathAndMethod(String, RequestMethod)}
+   * by given Guava {@link CacheBuilderSpec}, ex:
+   * "maximumSize=10000,expireAfterAccess=10m". The maximumSize is required to
+   * keep the cache bounded.
+   *
+   * @param cacheSpec
+   *          a Guava {@link CacheBuilderSpec} string
+   * @return a new {@link RoutingPathResolverOptions}
+   */
+  public RoutingPathResolverOptions withCache(String cacheSpec) {
+    CacheBuilderSpec spec = CacheBuilderSpec.parse(checkNotNull(cacheSpec));
+    checkArgument(spec.toParsableString().contains("maximumSize="),
+        "maximumSize is required in cacheSpec");
+
+    return new RoutingPathResolverOptions(spec, automaton, buildExecutor,
+        lazyPatterns, snapshotFile, metrics, normalizer,
+        adaptiveOrderingInterval, adaptiveOrderingExecutor);
+  }
+
+  /**
+   * Returns the {@link CacheBuilderSpec} of the resolution cache.
+   *
+   * @return a {@link CacheBuilderSpec} or null if the cache is disabled
+   */
+  public CacheBuilderSpec getCacheSpec() {
+    return cacheSpec;
+  }
+
+  /**
+   * Returns a copy of this options which merges all regex paths into one
+   * automaton, so a request path is scanned only once no matter how many
+   * routing paths there are. The automaton is built lazily while finding and
+   * costs more memory than the default segment index.
+   *
+   * @return a new {@link RoutingPathResolverOptions}
+   */
+  public RoutingPathResolverOptions withAutomaton() {
+    return new RoutingPathResolverOptions(cacheSpec, true, buildExecutor,
+        lazyPatterns, snapshotFile, metrics, normalizer,
+        adaptiveOrderingInterval, adaptiveOrderingExecutor);
+  }
+
+  /**
+   * Checks if the regex paths are matched by one automaton.
+   *
+   * @return true if the automaton is enabled, false otherwise
+   */
+  public boolean isAutomatonEnabled() {
+    return automaton;
+  }
+
+  /**
+   * Returns a copy of this options which builds a {@link RoutingPathResolver}
+   * in parallel by the common {@link ForkJoinPool}.
+   *
+   * @return a new {@link RoutingPathResolverOptions}
+   * @see #withParallelBuild(Executor)
+   */
+  public RoutingPathResolverOptions withParallelBuild() {
+    return withParallelBuild(ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Returns a copy of this options which builds a {@link RoutingPathResolver}
+   * in parallel by given {@link Executor}. Controller beans are scanned and
+   * their regex paths are compiled concurrently, then the results are merged
+   * in the bean order, so {@link RoutingPathResolver#getRoutingPaths()} is
+   * still identical to a serial build.
+   *
+   * @param buildExecutor
+   *          an {@link Executor} to run the building tasks
+   * @return a new {@link RoutingPathResolverOptions}
+   */
+  public RoutingPathResolverOptions withParallelBuild(Executor buildExecutor) {
+    return new RoutingPathResolverOptions(cacheSpec, automaton,
+        checkNotNull(buildExecutor), lazyPatterns, snapshotFile, metrics,
+        normalizer, adaptiveOrderingInterval, adaptiveOrderingExecutor);
+  }
+
+  /**
+   * Returns the {@link Executor} of the parallel build.
+   *
+   * @return an {@link Executor} or null if the build is serial
+   */
+  public Executor getBuildExecutor() {
+    return buildExecutor;
+  }
+
+  /**
+   * Returns a copy of this options which doesn't compile the regex paths while
+   * building. Each {@link RoutingPath#getRegexPath()} is compiled on its first
+   * call instead, and it is never called while finding if the regex path is
+   * simple enough to be matched without a {@link java.util.regex.Pattern}.
+   * Therefore, an invalid regex path is not reported until it is compiled.
+   *
+   * @return a new {@link RoutingPathResolverOptions}
+   */
+  public RoutingPathResolverOptions withLazyPatterns() {
+    return new RoutingPathResolverOptions(cacheSpec, automaton, buildExecutor,
+        true, snapshotFile, metrics, normalizer, adaptiveOrderingInterval,
+        adaptiveOrderingExecutor);
+  }
+
+  /**
+   * Checks if the regex paths are compiled lazily.
+   *
+   * @return true if the regex paths are compiled lazily, false otherwise
+   */
+  public boolean isLazyPatternsEnabled() {
+    return lazyPatterns;
+  }
+
+  /**
+   * Returns a copy of this options which stores the computed routing paths in
+   * given snapshot file and loads them on the next start instead of scanning
+   * the controllers. The snapshot is keyed by the fingerprint of the way the
+   * routes are found and the controller classes, including their bytecode.
+   * The place holders are checked while loading, or fingerprinted by their
+   * resolved paths if the routes are found by the handler methods of Spring
+   * MVC. A stale snapshot is rebuilt automatically.
+   *
+   * @param snapshotFile
+   *          the {@link Path} of the snapshot file
+   * @return a new {@link RoutingPathResolverOptions}
+   */
+  public RoutingPathResolverOptions withSnapshot(Path snapshotFile) {
+    return new RoutingPathResolverOptions(cacheSpec, automaton, buildExecutor,
+        lazyPatterns, checkNotNull(snapshotFile), metrics, normalizer,
+        adaptiveOrderingInterval, adaptiveOrderingExecutor);
+  }
+
+  /**
+   * Returns the {@link Path} of the snapshot file.
+   *
+   * @return a {@link Path} or null if the snapshot is disabled
+   */
+  public Path getSnapshotFile() {
+    return snapshotFile;
+  }
+
+  /**
+   * Returns a copy of this options which records the build phases, the route
+   * counts and every lookup into given {@link RoutingMetrics}, ex: a
+   * {@link MicrometerRoutingMetrics}. Lookups are only timed if the
+   * {@link RoutingMetrics} is not {@link RoutingMetrics#NOOP}.
+   *
+   * @param metrics
+   *          a {@link RoutingMetrics}
+   * @return a new {@link RoutingPathResolverOptions}
+   */
+  public RoutingPathResolverOptions withMetrics(RoutingMetrics metrics) {
+    return new RoutingPathResolverOptions(cacheSpec, automaton, buildExecutor,
+        lazyPatterns, snapshotFile, checkNotNull(metrics), normalizer,
+        adaptiveOrderingInterval, adaptiveOrderingExecutor);
+  }
+
+  /**
+   * Returns the {@link RoutingMetrics} of the measurements.
+   *
+   * @return a {@link RoutingMetrics}, {@link RoutingMetrics#NOOP} by default
+   */
+  public RoutingMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Returns a copy of this options which normalizes every request path by
+   * given {@link RequestPathNormalizer} before it is found. The literal paths,
+   * the segment index and the regex paths used while finding are built against
+   * the normalized paths of the {@link RoutingPath}s, ex: /a/{b}/ is found by
+   * /a/1 if the trailing slash is removed. The {@link RoutingPath}s themselves
+   * are not changed.
+   *
+   * @param normalizer
+   *          a {@link RequestPathNormalizer}
+   * @return a new {@link RoutingPathResolverOptions}
+   */
+  public RoutingPathResolverOptions withNormalizer(
+      RequestPathNormalizer normalizer) {
+    return new RoutingPathResolverOptions(cacheSpec, automaton, buildExecutor,
+        lazyPatterns, snapshotFile, metrics, checkNotNull(normalizer),
+        adaptiveOrderingInterval, adaptiveOrderingExecutor);
+  }
+
+  /**
+   * Returns the {@link RequestPathNormalizer} of the request paths.
+   *
+   * @return a {@link RequestPathNormalizer} or null if the request paths are
+   *         not normalized
+   */
+  public RequestPathNormalizer getNormalizer() {
+    return normalizer;
+  }
+
+  /**
+   * Returns a copy of this options which tries the most hit regex paths first,
+   * reordered every second by the common {@link ForkJoinPool}.
+   *
+   * @return a new {@link RoutingPathResolverOptions}
+   * @see #withAdaptiveOrdering(Duration, Executor)
+   */
+  public RoutingPathResolverOptions withAdaptiveOrdering() {
+    return withAdaptiveOrdering(Duration.ofSeconds(1),
+        ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Returns a copy of this options which counts the hits of each regex path
+   * and tries the most hit ones first. The hot regex paths are reordered by
+   * given {@link Executor} at most once per interval, so a lookup is never
+   * blocked by the reordering. A hot regex path wins only if no regex path
+   * before it in the usual order matches, so the results are identical to the
+   * default order. It has no effect if the automaton is enabled.
+   *
+   * @param interval
+   *          the minimum interval between two reorderings
+   * @param executor
+   *          an {@link Executor} to run the reorderings
+   * @return a new {@link RoutingPathResolverOptions}
+   */
+  public RoutingPathResolverOptions withAdaptiveOrdering(Duration interval,
+      Executor executor) {
+    checkArgument(!checkNotNull(interval).isNegative(),
+        "interval must not be negative");
+    return new RoutingPathResolverOptions(cacheSpec, automaton, buildExecutor,
+        lazyPatterns, snapshotFile, metrics, normalizer, interval,
+        checkNotNull(executor));
+  }
+
+  /**
+   * Returns the minimum interval between two reorderings of the hot regex
+   * paths.
+   *
+   * @return a {@link Duration} or null if the adaptive ordering is disabled
+   */
+  public Duration getAdaptiveOrderingInterval() {
+    return adaptiveOrderingInterval;
+  }
+
+  /**
+   * Returns the {@link Executor} of the reorderings of the hot regex paths.
+   *
+   * @return an {@link Executor} or null if the adaptive ordering is disabled
+   */
+  public Executor getAdaptiveOrderingExecutor() {
+    return adaptiveOrderingExecutor;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("cacheSpec",
+            cacheSpec == null ? null : cacheSpec.toParsableString())
+        .add("automaton", automaton).add("buildExecutor", buildExecutor)
+        .add("lazyPatterns", lazyPatterns).add("snapshotFile", snapshotFile)
+        .add("metrics", metrics).add("normalizer", normalizer)
+        .add("adaptiveOrderingInterval", adaptiveOrderingInterval)
+        .add("adaptiveOrderingExecutor", adaptiveOrderingExecutor).toString();
+  }
+
+}
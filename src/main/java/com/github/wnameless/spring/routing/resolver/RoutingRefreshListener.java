@@ -0,0 +1,54 @@
+/*
+ *
+ * Copyright 2020 Wei-Ming Wu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+package com.github.wnameless.spring.routing.resolver;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+
+/**
+ *
+ * {@link RoutingRefreshListener} refreshes a {@link RoutingPathResolver}
+ * whenever an {@link org.springframework.context.ApplicationContext} is
+ * refreshed, so controllers registered or removed at runtime are picked up
+ * incrementally. It has to be registered as a Spring bean or added to a
+ * {@link org.springframework.context.ConfigurableApplicationContext}.
+ *
+ */
+public final class RoutingRefreshListener
+    implements ApplicationListener<ContextRefreshedEvent> {
+
+  private final RoutingPathResolver pathRes;
+
+  /**
+   * Creates a {@link RoutingRefreshListener}.
+   * 
+   * @param pathRes
+   *          the {@link RoutingPathResolver} to be refreshed
+   */
+  public RoutingRefreshListener(RoutingPathResolver pathRes) {
+    this.pathRes = checkNotNull(pathRes);
+  }
+
+  @Override
+  public void onApplicationEvent(ContextRefreshedEvent event) {
+    pathRes.refresh(event.getApplicationContext());
+  }
+
+}
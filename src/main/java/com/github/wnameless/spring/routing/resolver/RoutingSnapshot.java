@@ -0,0 +1,376 @@
+/*
+ *
+ * Copyright 2020 Wei-Ming Wu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+package com.github.wnameless.spring.routing.resolver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Method;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.springframework.core.annotation.MergedAnnotations;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+
+import com.github.wnameless.spring.routing.resolver.HandlerMethodRegistry.HandlerMapping;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.reflect.TypeToken;
+
+/**
+ *
+ * {@link RoutingSnapshot} stores the computed {@link RoutingPath}s of a
+ * {@link RoutingPathResolver} in a compact binary file, so they can be loaded
+ * on the next start instead of scanning the controllers again.
+ * <p>
+ * A snapshot is keyed by the fingerprint of the {@link BuildMode} and the
+ * scanned controller classes, including their bytecode and the bytecode of the
+ * types their mappings depend on. The place holders are checked by resolving
+ * the raw paths again while loading, except the handler methods of Spring MVC
+ * are resolved already, so their paths are fingerprinted instead. A missing,
+ * stale or broken snapshot is simply ignored.
+ * <p>
+ * The file format is: magic, version, fingerprint, a string table and the
+ * routes which refer to the string table.
+ *
+ */
+final class RoutingSnapshot {
+
+  private static final int MAGIC = 0x52535331; // RSS1
+  private static final int VERSION = 4;
+
+  /**
+   * The ways a {@link RoutingPathResolver} finds its routes. They may find
+   * different routes from the same controllers, so a snapshot is only loaded
+   * by the same {@link BuildMode}.
+   */
+  enum BuildMode {
+    REFLECTION, MANIFEST, HANDLER_METHODS
+  }
+
+  /**
+   * A {@link RoutingEntry} without annotations, its controller and its mapping
+   * method. The mapping method may be declared by a super type of the
+   * controller.
+   */
+  static final class Route {
+
+    final Set<RequestMethod> requestMethods;
+    final String rawPath;
+    final String path;
+    final String regex;
+    final String controllerName;
+    final MappingMethod mappingMethod;
+
+    Route(Set<RequestMethod> requestMethods, String rawPath, String path,
+        String regex, String controllerName, MappingMethod mappingMethod) {
+      this.requestMethods = requestMethods;
+      this.rawPath = rawPath;
+      this.path = path;
+      this.regex = regex;
+      this.controllerName = controllerName;
+      this.mappingMethod = mappingMethod;
+    }
+
+    Route(Class<?> controller, RoutingEntry entry, Method method) {
+      this(entry.methods, entry.rawPath, entry.path, entry.regex,
+          controller.getName(),
+          new MappingMethod(method.getDeclaringClass().getName(),
+              method.getName(),
+              Arrays.stream(method.getParameterTypes())
+                  .map(Class::getTypeName).toArray(String[]::new)));
+    }
+
+  }
+
+  private RoutingSnapshot() {}
+
+  /**
+   * Computes the fingerprint of given controller classes. Besides the bytecode
+   * of each controller, the bytecode of its super types, which may declare
+   * inherited mapping methods, and of every annotation type which contributes
+   * to a merged {@link RequestMapping}, ex: a composed mapping annotation, is
+   * also included. The types of the JDK are skipped.
+   * <p>
+   * The handler mappings of Spring MVC carry the resolved paths, so their
+   * paths and request methods are included as well, ex: a changed place holder
+   * or path prefix makes a new fingerprint.
+   *
+   * @param buildMode
+   *          the {@link BuildMode} of the routes
+   * @param controllers
+   *          the controller classes in the scanning order
+   * @param handlerMappings
+   *          the {@link HandlerMapping}s of the controllers, null if the build
+   *          mode is not {@link BuildMode#HANDLER_METHODS}
+   * @return a fingerprint or null if the bytecode of any class is unavailable
+   */
+  static byte[] fingerprint(BuildMode buildMode, List<Class<?>> controllers,
+      Map<Class<?>, List<HandlerMapping>> handlerMappings) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    hasher.putInt(VERSION);
+    hasher.putString(buildMode.name(), StandardCharsets.UTF_8);
+    Set<Class<?>> hashedTypes = new HashSet<>();
+    for (Class<?> controller : controllers) {
+      if (controller.getClassLoader() == null) return null;
+
+      for (Class<?> type : mappingSources(controller)) {
+        if (type.getClassLoader() == null || !hashedTypes.add(type)) continue;
+        if (!putBytecode(hasher, type)) return null;
+      }
+      if (handlerMappings != null)
+        putHandlerMappings(hasher, controller, handlerMappings.get(controller));
+    }
+    return hasher.hash().asBytes();
+  }
+
+  private static void putHandlerMappings(Hasher hasher, Class<?> controller,
+      List<HandlerMapping> mappings) {
+    hasher.putString(controller.getName(), StandardCharsets.UTF_8);
+    if (mappings == null) {
+      hasher.putInt(-1);
+      return;
+    }
+
+    hasher.putInt(mappings.size());
+    for (HandlerMapping mapping : mappings) {
+      hasher.putString(mapping.method.toGenericString(),
+          StandardCharsets.UTF_8);
+      hasher.putInt(mapping.paths.size());
+      for (String path : mapping.paths) {
+        hasher.putInt(path.length()).putString(path, StandardCharsets.UTF_8);
+      }
+      for (RequestMethod requestMethod : mapping.requestMethods) {
+        hasher.putInt(requestMethod.ordinal());
+      }
+      hasher.putInt(-1);
+    }
+  }
+
+  /**
+   * Returns the controller itself, its super types and the annotation types of
+   * their merged {@link RequestMapping}s. The annotation types are sorted by
+   * name, because the order of declared methods is unspecified.
+   *
+   * @param controller
+   *          a controller class
+   * @return a list of types which the routes of the controller depend on
+   */
+  static List<Class<?>> mappingSources(Class<?> controller) {
+    List<Class<?>> types = new ArrayList<>();
+    types.add(controller);
+    Set<Class<?>> annotationTypes =
+        new TreeSet<>(Comparator.comparing(Class::getName));
+    for (Class<?> type : TypeToken.of(controller).getTypes().rawTypes()) {
+      // the types of the JDK, ex: Object, never declare any mapping
+      if (type.getClassLoader() == null) continue;
+      if (type != controller) types.add(type);
+      addMappingTypes(type, annotationTypes);
+      for (Method method : type.getDeclaredMethods()) {
+        addMappingTypes(method, annotationTypes);
+      }
+    }
+    types.addAll(annotationTypes);
+    return types;
+  }
+
+  private static void addMappingTypes(AnnotatedElement element,
+      Set<Class<?>> annotationTypes) {
+    MergedAnnotations.from(element).stream(RequestMapping.class)
+        .forEach(mapping -> annotationTypes.addAll(mapping.getMetaTypes()));
+  }
+
+  private static boolean putBytecode(Hasher hasher, Class<?> type) {
+    String resource = type.getName().replace('.', '/') + ".class";
+    try (InputStream in =
+        type.getClassLoader().getResourceAsStream(resource)) {
+      if (in == null) return false;
+
+      hasher.putString(type.getName(), StandardCharsets.UTF_8);
+      byte[] buffer = new byte[8192];
+      for (int n = in.read(buffer); n != -1; n = in.read(buffer)) {
+        hasher.putBytes(buffer, 0, n);
+      }
+      return true;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Reads the {@link Route}s from a snapshot file by memory mapping.
+   *
+   * @param file
+   *          a snapshot file
+   * @param fingerprint
+   *          the expected fingerprint
+   * @return a list of {@link Route} or null if the snapshot is missing, stale
+   *         or broken
+   */
+  static List<Route> read(Path file, byte[] fingerprint) {
+    if (!Files.isRegularFile(file)) return null;
+
+    try (FileChannel channel =
+        FileChannel.open(file, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer =
+          channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) return null;
+
+      byte[] actual = new byte[buffer.getInt()];
+      buffer.get(actual);
+      if (!Arrays.equals(actual, fingerprint)) return null;
+
+      String[] strings = new String[buffer.getInt()];
+      for (int i = 0; i < strings.length; i++) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        strings[i] = new String(bytes, StandardCharsets.UTF_8);
+      }
+
+      RequestMethod[] requestMethods = RequestMethod.values();
+      List<Route> routes = new ArrayList<>();
+      for (int count = buffer.getInt(); count > 0; count--) {
+        Set<RequestMethod> methods = EnumSet.noneOf(RequestMethod.class);
+        int bits = buffer.getShort() & 0xFFFF;
+        for (; bits != 0; bits &= bits - 1) {
+          methods.add(requestMethods[Integer.numberOfTrailingZeros(bits)]);
+        }
+        if (methods.isEmpty()) return null;
+        String rawPath = strings[buffer.getInt()];
+        String path = strings[buffer.getInt()];
+        String regex = strings[buffer.getInt()];
+        String controllerName = strings[buffer.getInt()];
+        String className = strings[buffer.getInt()];
+        String methodName = strings[buffer.getInt()];
+        String[] parameterTypeNames = new String[buffer.get() & 0xFF];
+        for (int i = 0; i < parameterTypeNames.length; i++) {
+          parameterTypeNames[i] = strings[buffer.getInt()];
+        }
+        routes.add(new Route(methods, rawPath, path, regex, controllerName,
+            new MappingMethod(className, methodName, parameterTypeNames)));
+      }
+      return buffer.hasRemaining() ? null : routes;
+    } catch (IOException | BufferUnderflowException
+        | IndexOutOfBoundsException | NegativeArraySizeException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Writes the {@link Route}s into a snapshot file. The file is replaced
+   * atomically if possible, and any failure is ignored because the snapshot
+   * is only an optimization.
+   *
+   * @param file
+   *          a snapshot file
+   * @param fingerprint
+   *          the fingerprint of the controller classes
+   * @param routes
+   *          a list of {@link Route}
+   */
+  static void write(Path file, byte[] fingerprint, List<Route> routes) {
+    Map<String, Integer> stringIds = new LinkedHashMap<>();
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(body)) {
+      out.writeInt(routes.size());
+      for (Route route : routes) {
+        int bits = 0;
+        for (RequestMethod requestMethod : route.requestMethods) {
+          bits |= 1 << requestMethod.ordinal();
+        }
+        out.writeShort(bits);
+        out.writeInt(stringId(stringIds, route.rawPath));
+        out.writeInt(stringId(stringIds, route.path));
+        out.writeInt(stringId(stringIds, route.regex));
+        out.writeInt(stringId(stringIds, route.controllerName));
+        out.writeInt(
+            stringId(stringIds, route.mappingMethod.getClassName()));
+        out.writeInt(
+            stringId(stringIds, route.mappingMethod.getMethodName()));
+        List<String> parameterTypeNames =
+            route.mappingMethod.getParameterTypeNames();
+        out.writeByte(parameterTypeNames.size());
+        for (String parameterTypeName : parameterTypeNames) {
+          out.writeInt(stringId(stringIds, parameterTypeName));
+        }
+      }
+    } catch (IOException e) {
+      return;
+    }
+
+    ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(snapshot)) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(fingerprint.length);
+      out.write(fingerprint);
+      out.writeInt(stringIds.size());
+      for (String string : stringIds.keySet()) {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+      }
+      body.writeTo(out);
+    } catch (IOException e) {
+      return;
+    }
+
+    Path tempFile = null;
+    try {
+      Path dir = file.toAbsolutePath().getParent();
+      Files.createDirectories(dir);
+      tempFile = Files.createTempFile(dir, file.getFileName().toString(),
+          ".tmp");
+      Files.write(tempFile, snapshot.toByteArray());
+      try {
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      } catch (IOException e) {
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } catch (IOException e) {
+      try {
+        if (tempFile != null) Files.deleteIfExists(tempFile);
+      } catch (IOException ignored) {}
+    }
+  }
+
+  private static int stringId(Map<String, Integer> stringIds, String string) {
+    return stringIds.computeIfAbsent(string, k -> stringIds.size());
+  }
+
+}
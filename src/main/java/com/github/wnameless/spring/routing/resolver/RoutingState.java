@@ -0,0 +1,77 @@
+/*
+ *
+ * Copyright 2020 Wei-Ming Wu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+package com.github.wnameless.spring.routing.resolver;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.springframework.web.bind.annotation.RequestMethod;
+
+import com.google.common.cache.Cache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ *
+ * {@link RoutingState} is an immutable snapshot of everything a
+ * {@link RoutingPathResolver} looks up: the {@link RoutingPath}s of each
+ * controller, the {@link RoutingTable}s, the {@link AnnotationIndex} and the
+ * resolution cache. A new {@link RoutingState} is fully built before it is
+ * published by one volatile write, so a lookup never sees a half-built table.
+ *
+ */
+final class RoutingState {
+
+  final ImmutableMap<Class<?>, ImmutableList<RoutingPath>> controllerPaths;
+  final ImmutableList<RoutingPath> routingPaths;
+  final RoutingTable routingTable;
+  final ImmutableMap<RequestMethod, RoutingTable> routingTables;
+  final AnnotationIndex annotationIndex;
+  final Cache<Entry<String, RequestMethod>, List<RoutingPath>> cache;
+
+  /**
+   * Creates a {@link RoutingState}.
+   *
+   * @param controllerPaths
+   *          the {@link RoutingPath}s of each controller in controller order
+   * @param routingPaths
+   *          the distinct {@link RoutingPath}s of all controllers
+   * @param routingTable
+   *          the {@link RoutingTable} of all {@link RoutingPath}s
+   * @param routingTables
+   *          the {@link RoutingTable} of each {@link RequestMethod}
+   * @param annotationIndex
+   *          the {@link AnnotationIndex} of all {@link RoutingPath}s
+   * @param cache
+   *          the resolution cache, null if disabled
+   */
+  RoutingState(Map<Class<?>, ImmutableList<RoutingPath>> controllerPaths,
+      List<RoutingPath> routingPaths, RoutingTable routingTable,
+      Map<RequestMethod, RoutingTable> routingTables,
+      AnnotationIndex annotationIndex,
+      Cache<Entry<String, RequestMethod>, List<RoutingPath>> cache) {
+    this.controllerPaths = ImmutableMap.copyOf(controllerPaths);
+    this.routingPaths = ImmutableList.copyOf(routingPaths);
+    this.routingTable = routingTable;
+    this.routingTables = ImmutableMap.copyOf(routingTables);
+    this.annotationIndex = annotationIndex;
+    this.cache = cache;
+  }
+
+}
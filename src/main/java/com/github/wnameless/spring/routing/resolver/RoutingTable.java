@@ -0,0 +1,531 @@
+/*
+ *
+ * Copyright 2020 Wei-Ming Wu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+package com.github.wnameless.spring.routing.resolver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+import com.github.wnameless.spring.routing.resolver.HotRouteOrdering.HotRoutes;
+import com.google.common.collect.ImmutableList;
+
+/**
+ *
+ * {@link RoutingTable} holds a group of {@link RoutingPath}s in insertion
+ * order together with a literal path index and a {@link RoutingTrie} of them.
+ * The {@link PathSpecificity} rank of each {@link RoutingPath} is also
+ * precomputed to find the best match. If a {@link RoutingAutomaton} is used,
+ * it replaces the {@link RoutingTrie} and no regex path is tried one by one.
+ * <p>
+ * Regex paths are matched by their {@link AtomPattern}s whenever possible, so
+ * finding a single {@link RoutingPath} in a range of a {@link CharSequence}
+ * creates no object.
+ * <p>
+ * The path variable names of each {@link RoutingPath} are resolved in advance,
+ * so a {@link RoutingMatch} captures their values while matching.
+ * <p>
+ * If a {@link RequestPathNormalizer} is given, every request path is
+ * normalized before it is found, and all indexes are built against the
+ * normalized paths of the {@link RoutingPath}s.
+ * <p>
+ * If the adaptive ordering is enabled, the hot regex paths of a
+ * {@link HotRouteOrdering} are tried before the others. A matched hot regex
+ * path only wins after the candidates before it in the usual order whose
+ * {@link PathTemplate}s may overlap it are checked, so the result never
+ * changes.
+ *
+ */
+final class RoutingTable {
+
+  private static final int[] NO_IDS = new int[0];
+
+  private static final ThreadLocal<BitSet> CANDIDATES =
+      ThreadLocal.withInitial(BitSet::new);
+  private static final ThreadLocal<BitSet> RANKED_CANDIDATES =
+      ThreadLocal.withInitial(BitSet::new);
+  private static final ThreadLocal<BitSet> SHADOWS =
+      ThreadLocal.withInitial(BitSet::new);
+
+  private final List<RoutingPath> routingPaths;
+  private final RequestPathNormalizer normalizer;
+  // the normalized paths, the same as the paths if no normalizer is given
+  private final String[] normalizedPaths;
+  private final AtomPattern[] atomPatterns;
+  private final CharSequenceTable<int[]> literalIndex =
+      new CharSequenceTable<>();
+  private final RoutingTrie trie;
+  private final RoutingAutomaton automaton;
+  private final int[] idsByRank;
+  private final int[] ranksById;
+  private final String[][] variableNames;
+  private final int maxGroups;
+  // the regex paths with capturing groups if no AtomPattern is available
+  private final Pattern[] capturePatterns;
+  // the regex paths of the normalized paths which differ from their paths
+  private final Pattern[] normalizedPatterns;
+  // null if the adaptive ordering is disabled
+  private final HotRouteOrdering hotRouteOrdering;
+
+  /**
+   * Creates a {@link RoutingTable}.
+   *
+   * @param routingPaths
+   *          a list of {@link RoutingPath} in insertion order
+   * @param options
+   *          the {@link RoutingPathResolverOptions} of the automaton, the
+   *          normalizer and the adaptive ordering
+   */
+  RoutingTable(List<RoutingPath> routingPaths,
+      RoutingPathResolverOptions options) {
+    this.routingPaths = ImmutableList.copyOf(routingPaths);
+    normalizer = options.getNormalizer();
+    boolean automaton = options.isAutomatonEnabled();
+    // the automaton tries no regex path one by one
+    boolean adaptive =
+        !automaton && options.getAdaptiveOrderingInterval() != null;
+    PathTemplate[] templates =
+        adaptive ? new PathTemplate[routingPaths.size()] : null;
+
+    normalizedPaths = new String[routingPaths.size()];
+    atomPatterns = new AtomPattern[routingPaths.size()];
+    variableNames = new String[routingPaths.size()][];
+    capturePatterns = new Pattern[routingPaths.size()];
+    normalizedPatterns = new Pattern[routingPaths.size()];
+    PathSpecificity[] specificities = new PathSpecificity[routingPaths.size()];
+    // the RoutingPaths of the same RoutingEntry share everything but the id
+    Map<RoutingEntry, Integer> entryIds = new IdentityHashMap<>();
+    int groups = 0;
+    for (int i = 0; i < atomPatterns.length; i++) {
+      RoutingPath routingPath = routingPaths.get(i);
+      Integer sharedId = entryIds.putIfAbsent(routingPath.getEntry(), i);
+      if (sharedId != null) {
+        normalizedPaths[i] = normalizedPaths[sharedId];
+        atomPatterns[i] = atomPatterns[sharedId];
+        variableNames[i] = variableNames[sharedId];
+        capturePatterns[i] = capturePatterns[sharedId];
+        normalizedPatterns[i] = normalizedPatterns[sharedId];
+        specificities[i] = specificities[sharedId];
+        if (templates != null) templates[i] = templates[sharedId];
+      } else {
+        String path = routingPath.getPath();
+        String normalizedPath =
+            normalizer == null ? path : normalizer.normalizePath(path);
+        PathTemplate template = PathTemplate.parse(normalizedPath);
+        String regex = normalizedPath == path ? routingPath.getRegex()
+            : template.toRegex();
+        normalizedPaths[i] = normalizedPath;
+        atomPatterns[i] = AtomPattern.compile(regex);
+        variableNames[i] = template.getVariableNames();
+        if (templates != null) templates[i] = template;
+        if (atomPatterns[i] == null && variableNames[i].length > 0)
+          capturePatterns[i] =
+              Pattern.compile(regex.replace("[^/]+", "([^/]+)"));
+        if (atomPatterns[i] == null && normalizedPath != path)
+          normalizedPatterns[i] = Pattern.compile(regex);
+        specificities[i] = new PathSpecificity(path);
+      }
+      groups = Math.max(groups, Math.max(variableNames[i].length,
+          atomPatterns[i] == null ? 0 : atomPatterns[i].groupCount()));
+
+      int[] ids = literalIndex.get(normalizedPaths[i]);
+      ids = ids == null ? new int[] { i } : append(ids, i);
+      literalIndex.put(normalizedPaths[i], ids);
+    }
+    maxGroups = groups;
+
+    trie = automaton ? null : new RoutingTrie(Arrays.asList(normalizedPaths));
+    this.automaton = automaton ? new RoutingAutomaton(this::regexPath,
+        Arrays.asList(atomPatterns)) : null;
+
+    // a stable sort, insertion order breaks the tie
+    idsByRank = IntStream.range(0, specificities.length).boxed()
+        .sorted(Comparator.comparing(i -> specificities[i]))
+        .mapToInt(Integer::intValue).toArray();
+    ranksById = new int[idsByRank.length];
+    for (int rank = 0; rank < idsByRank.length; rank++) {
+      ranksById[idsByRank[rank]] = rank;
+    }
+
+    hotRouteOrdering = !adaptive ? null
+        : new HotRouteOrdering(routingPaths.size(),
+            id -> overlaps(templates, id),
+            options.getAdaptiveOrderingInterval(),
+            options.getAdaptiveOrderingExecutor());
+  }
+
+  /**
+   * Returns the {@link RoutingPath}s of this table in insertion order.
+   *
+   * @return an immutable list of {@link RoutingPath}
+   */
+  List<RoutingPath> getRoutingPaths() {
+    return routingPaths;
+  }
+
+  /**
+   * Returns the first {@link RoutingPath} whose path equals to the given range
+   * of a request path, otherwise the first {@link RoutingPath} whose regex path
+   * matches it.
+   *
+   * @param requestPath
+   *          to be found
+   * @param start
+   *          the start index, inclusive
+   * @param end
+   *          the end index, exclusive
+   * @return founded {@link RoutingPath} or null
+   */
+  RoutingPath findFirst(CharSequence requestPath, int start, int end) {
+    CharSequence path = normalize(requestPath, start, end);
+    if (path != requestPath) {
+      start = 0;
+      end = path.length();
+    }
+    int id = firstId(path, start, end, null);
+    return id < 0 ? null : routingPaths.get(id);
+  }
+
+  /**
+   * Returns the first {@link RoutingPath} whose path equals to the given range
+   * of a request path, otherwise the most specific {@link RoutingPath} whose
+   * regex path matches it.
+   *
+   * @param requestPath
+   *          to be found
+   * @param start
+   *          the start index, inclusive
+   * @param end
+   *          the end index, exclusive
+   * @return founded {@link RoutingPath} or null
+   */
+  RoutingPath findBest(CharSequence requestPath, int start, int end) {
+    CharSequence path = normalize(requestPath, start, end);
+    if (path != requestPath) {
+      start = 0;
+      end = path.length();
+    }
+    int id = bestId(path, start, end, null);
+    return id < 0 ? null : routingPaths.get(id);
+  }
+
+  /**
+   * Works like {@link #findFirst(CharSequence, int, int)} but also captures
+   * the path variables.
+   *
+   * @param requestPath
+   *          to be found
+   * @param start
+   *          the start index, inclusive
+   * @param end
+   *          the end index, exclusive
+   * @return founded {@link RoutingMatch} or null
+   */
+  RoutingMatch matchFirst(CharSequence requestPath, int start, int end) {
+    CharSequence path = normalize(requestPath, start, end);
+    if (path != requestPath) {
+      start = 0;
+      end = path.length();
+    }
+    int[] groups = newGroups();
+    int id = firstId(path, start, end, groups);
+    return id < 0 ? null : newMatch(id, path, groups);
+  }
+
+  /**
+   * Works like {@link #findBest(CharSequence, int, int)} but also captures the
+   * path variables.
+   *
+   * @param requestPath
+   *          to be found
+   * @param start
+   *          the start index, inclusive
+   * @param end
+   *          the end index, exclusive
+   * @return founded {@link RoutingMatch} or null
+   */
+  RoutingMatch matchBest(CharSequence requestPath, int start, int end) {
+    CharSequence path = normalize(requestPath, start, end);
+    if (path != requestPath) {
+      start = 0;
+      end = path.length();
+    }
+    int[] groups = newGroups();
+    int id = bestId(path, start, end, groups);
+    return id < 0 ? null : newMatch(id, path, groups);
+  }
+
+  // captures the path variables into groups if groups is not null
+  private int firstId(CharSequence requestPath, int start, int end,
+      int[] groups) {
+    int[] literals = literalIds(requestPath, start, end);
+    if (literals.length > 0)
+      return literalId(literals[0], requestPath, start, end, groups);
+
+    BitSet candidates = CANDIDATES.get();
+    candidates.clear();
+    boolean matched = collectCandidates(requestPath, start, end, candidates);
+    if (hotRouteOrdering != null)
+      return hotFirstId(candidates, null, null, requestPath, start, end,
+          groups);
+    for (int i = candidates.nextSetBit(0); i >= 0;
+        i = candidates.nextSetBit(i + 1)) {
+      if (matches(i, requestPath, start, end, matched, groups)) return i;
+    }
+
+    return -1;
+  }
+
+  // captures the path variables into groups if groups is not null
+  private int bestId(CharSequence requestPath, int start, int end,
+      int[] groups) {
+    int[] literals = literalIds(requestPath, start, end);
+    if (literals.length > 0)
+      return literalId(literals[0], requestPath, start, end, groups);
+
+    BitSet candidates = CANDIDATES.get();
+    candidates.clear();
+    boolean matched = collectCandidates(requestPath, start, end, candidates);
+    BitSet rankedCandidates = RANKED_CANDIDATES.get();
+    rankedCandidates.clear();
+    for (int i = candidates.nextSetBit(0); i >= 0;
+        i = candidates.nextSetBit(i + 1)) {
+      rankedCandidates.set(ranksById[i]);
+    }
+    if (hotRouteOrdering != null)
+      return hotFirstId(rankedCandidates, idsByRank, ranksById, requestPath,
+          start, end, groups);
+    for (int rank = rankedCandidates.nextSetBit(0); rank >= 0;
+        rank = rankedCandidates.nextSetBit(rank + 1)) {
+      int i = idsByRank[rank];
+      if (matches(i, requestPath, start, end, matched, groups)) return i;
+    }
+
+    return -1;
+  }
+
+  /**
+   * Tries the hot candidates first. A matched hot candidate only loses to a
+   * candidate before it in the given order which may overlap it, and the first
+   * match in the order still wins. The given order is the ids if no order is
+   * given. The candidates are cleared while trying.
+   */
+  private int hotFirstId(BitSet candidates, int[] idsByOrder,
+      int[] ordersById, CharSequence requestPath, int start, int end,
+      int[] groups) {
+    HotRoutes hotRoutes = hotRouteOrdering.getHotRoutes();
+    for (int h = 0; h < hotRoutes.ids.length; h++) {
+      int hotId = hotRoutes.ids[h];
+      int hotOrder = ordersById == null ? hotId : ordersById[hotId];
+      if (!candidates.get(hotOrder)) continue;
+      candidates.clear(hotOrder);
+      if (!matches(hotId, requestPath, start, end, false, groups)) continue;
+
+      BitSet shadows = SHADOWS.get();
+      shadows.clear();
+      for (int id : hotRoutes.overlaps[h]) {
+        int order = ordersById == null ? id : ordersById[id];
+        if (order < hotOrder && candidates.get(order)) shadows.set(order);
+      }
+      // the captured groups of the hot id are restored unless it is shadowed
+      int[] hotGroups =
+          groups == null || shadows.isEmpty() ? null : groups.clone();
+      for (int order = shadows.nextSetBit(0); order >= 0;
+          order = shadows.nextSetBit(order + 1)) {
+        int id = idsByOrder == null ? order : idsByOrder[order];
+        if (matches(id, requestPath, start, end, false, groups)) {
+          hotRouteOrdering.recordHit(id);
+          return id;
+        }
+      }
+      if (hotGroups != null)
+        System.arraycopy(hotGroups, 0, groups, 0, groups.length);
+      hotRouteOrdering.recordHit(hotId);
+      return hotId;
+    }
+
+    for (int order = candidates.nextSetBit(0); order >= 0;
+        order = candidates.nextSetBit(order + 1)) {
+      int id = idsByOrder == null ? order : idsByOrder[order];
+      if (matches(id, requestPath, start, end, false, groups)) {
+        hotRouteOrdering.recordHit(id);
+        return id;
+      }
+    }
+    return -1;
+  }
+
+  // the ids of the other RoutingPaths whose regex paths may overlap the given
+  private int[] overlaps(PathTemplate[] templates, int id) {
+    return IntStream.range(0, templates.length)
+        .filter(i -> i != id && templates[i].mayOverlap(templates[id]))
+        .toArray();
+  }
+
+  /**
+   * Returns all {@link RoutingPath}s whose path equals to or regex path matches
+   * given request path in insertion order.
+   *
+   * @param requestPath
+   *          to be found
+   * @return an immutable list of founded {@link RoutingPath}s
+   */
+  /**
+   * Checks if the given range of a request path is resolved by the literal
+   * path index, which is tried before any regex path. It is normalized like
+   * the other lookups, so it tells how a lookup of the same range is resolved.
+   *
+   * @param requestPath
+   *          a request path
+   * @param start
+   *          the start index, inclusive
+   * @param end
+   *          the end index, exclusive
+   * @return true if any path equals to the normalized request path, false
+   *         otherwise
+   */
+  boolean isLiteral(CharSequence requestPath, int start, int end) {
+    CharSequence path = normalize(requestPath, start, end);
+    if (path != requestPath) {
+      start = 0;
+      end = path.length();
+    }
+    return literalIds(path, start, end).length > 0;
+  }
+
+  List<RoutingPath> findAll(String requestPath) {
+    if (normalizer != null) requestPath = normalizer.normalize(requestPath);
+    ImmutableList.Builder<RoutingPath> paths = ImmutableList.builder();
+
+    BitSet candidates = new BitSet(routingPaths.size());
+    boolean matched =
+        collectCandidates(requestPath, 0, requestPath.length(), candidates);
+    for (int i : literalIds(requestPath, 0, requestPath.length())) {
+      candidates.set(i);
+    }
+    for (int i = candidates.nextSetBit(0); i >= 0;
+        i = candidates.nextSetBit(i + 1)) {
+      RoutingPath routingPath = routingPaths.get(i);
+      if (matched || normalizedPaths[i].equals(requestPath)
+          || matches(i, requestPath, 0, requestPath.length(), false, null)) {
+        paths.add(routingPath);
+      }
+    }
+
+    return paths.build();
+  }
+
+  private CharSequence normalize(CharSequence requestPath, int start,
+      int end) {
+    return normalizer == null ? requestPath
+        : normalizer.normalize(requestPath, start, end);
+  }
+
+  private Pattern regexPath(int id) {
+    Pattern pattern = normalizedPatterns[id];
+    return pattern != null ? pattern : routingPaths.get(id).getRegexPath();
+  }
+
+  private int[] literalIds(CharSequence requestPath, int start, int end) {
+    int[] ids = literalIndex.get(requestPath, start, end);
+    return ids == null ? NO_IDS : ids;
+  }
+
+  /**
+   * Collects the ids of {@link RoutingPath}s which may match given request
+   * path.
+   *
+   * @return true if all the collected {@link RoutingPath}s are matched already
+   */
+  private boolean collectCandidates(CharSequence requestPath, int start,
+      int end, BitSet candidates) {
+    if (automaton != null) {
+      automaton.collectMatches(requestPath, start, end, candidates);
+      return true;
+    }
+
+    trie.collectCandidates(requestPath, start, end, candidates);
+    return false;
+  }
+
+  // a path variable of a literal path may not match its own regex path, ex:
+  // {p:a/b}, then no variable is captured
+  private int literalId(int id, CharSequence requestPath, int start, int end,
+      int[] groups) {
+    if (groups != null && !matches(id, requestPath, start, end, false, groups))
+      Arrays.fill(groups, -1);
+    return id;
+  }
+
+  // the automaton doesn't capture, so a matched regex path is matched again
+  // only if the path variables are required
+  private boolean matches(int id, CharSequence requestPath, int start,
+      int end, boolean matched, int[] groups) {
+    if (groups == null || variableNames[id].length == 0) {
+      if (matched) return true;
+      if (atomPatterns[id] != null)
+        return atomPatterns[id].matches(requestPath, start, end);
+      return regexPath(id).matcher(requestPath.subSequence(start, end))
+          .matches();
+    }
+
+    if (atomPatterns[id] != null)
+      return atomPatterns[id].matches(requestPath, start, end, groups);
+
+    Matcher m =
+        capturePatterns[id].matcher(requestPath.subSequence(start, end));
+    if (!m.matches()) return false;
+    for (int g = 0; g < Math.min(m.groupCount(), maxGroups); g++) {
+      groups[2 * g] = start + m.start(g + 1);
+      groups[2 * g + 1] = start + m.end(g + 1);
+    }
+    return true;
+  }
+
+  private RoutingMatch newMatch(int id, CharSequence requestPath,
+      int[] groups) {
+    String[] names = variableNames[id];
+    Map<String, String> pathVariables = new LinkedHashMap<>();
+    for (int v = 0; v < names.length; v++) {
+      if (v >= maxGroups || groups[2 * v] < 0) break;
+      pathVariables.put(names[v],
+          requestPath.subSequence(groups[2 * v], groups[2 * v + 1]).toString());
+    }
+    return new RoutingMatch(routingPaths.get(id), pathVariables);
+  }
+
+  private int[] newGroups() {
+    int[] groups = new int[2 * maxGroups];
+    Arrays.fill(groups, -1);
+    return groups;
+  }
+
+  private static int[] append(int[] ids, int id) {
+    int[] newIds = Arrays.copyOf(ids, ids.length + 1);
+    newIds[ids.length] = id;
+    return newIds;
+  }
+
+}
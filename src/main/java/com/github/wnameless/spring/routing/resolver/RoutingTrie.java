@@ -0,0 +1,226 @@
+/*
+ *
+ * Copyright 2020 Wei-Ming Wu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+package com.github.wnameless.spring.routing.resolver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ *
+ * {@link RoutingTrie} indexes the paths of {@link RoutingPath}s segment by
+ * segment, so the candidates of a request path can be collected in O(path
+ * segments) instead of trying the regex path of every {@link RoutingPath}.
+ * <p>
+ * The trie is a conservative filter: every {@link RoutingPath} whose regex path
+ * may match a request path is collected, but the regex path still decides the
+ * final match. A path which cannot be split into segments safely is indexed
+ * by its literal prefix instead, and collected only if the request path starts
+ * with the prefix.
+ *
+ */
+final class RoutingTrie {
+
+  private static final int LITERAL = 0;
+  private static final int WILDCARD = 1;
+  private static final int TAIL = 2;
+
+  private final Node root = new Node();
+  private final LiteralPrefixIndex prefixIndex = new LiteralPrefixIndex();
+
+  /**
+   * Creates a {@link RoutingTrie}. The index of each path in given list is used
+   * as its id.
+   *
+   * @param paths
+   *          the paths of {@link RoutingPath}s, which may be normalized
+   */
+  RoutingTrie(List<String> paths) {
+    for (int i = 0; i < paths.size(); i++) {
+      add(paths.get(i), i);
+    }
+  }
+
+  /**
+   * Collects the ids of all {@link RoutingPath}s which may match the given
+   * range of a request path without creating any object.
+   *
+   * @param requestPath
+   *          a request path
+   * @param start
+   *          the start index, inclusive
+   * @param end
+   *          the end index, exclusive
+   * @param candidates
+   *          to store the collected ids
+   */
+  void collectCandidates(CharSequence requestPath, int start, int end,
+      BitSet candidates) {
+    // the first slash of an URL can be omitted
+    if (start < end && requestPath.charAt(start) == '/') start++;
+    if (!prefixIndex.isEmpty())
+      prefixIndex.collect(requestPath, start, end, candidates);
+    collect(root, requestPath, start, end, candidates);
+  }
+
+  /**
+   * Walks the segment starts at given position. The position is beyond the end
+   * if all segments are consumed.
+   */
+  private void collect(Node node, CharSequence requestPath, int pos, int end,
+      BitSet candidates) {
+    setAll(candidates, node.tails);
+
+    if (pos > end) {
+      setAll(candidates, node.terminals);
+      return;
+    }
+    // the last slash of an URL is optional if user not mentions
+    if (pos == end) setAll(candidates, node.slashTerminals);
+
+    int segmentEnd = pos;
+    while (segmentEnd < end && requestPath.charAt(segmentEnd) != '/') {
+      segmentEnd++;
+    }
+    Node literal = node.literals.get(requestPath, pos, segmentEnd);
+    if (literal != null)
+      collect(literal, requestPath, segmentEnd + 1, end, candidates);
+    if (node.wildcard != null)
+      collect(node.wildcard, requestPath, segmentEnd + 1, end, candidates);
+  }
+
+  private void add(String path, int id) {
+    String trimmedPath = path.startsWith("/") ? path.substring(1) : path;
+    List<String> segments = new ArrayList<>();
+    List<Integer> kinds = new ArrayList<>();
+
+    if (trimmedPath.isEmpty() || trimmedPath.startsWith("/")) {
+      root.tails = append(root.tails, id);
+      return;
+    }
+    if (!splitPath(trimmedPath, segments, kinds)) {
+      prefixIndex.add(PathTemplate.parse(trimmedPath).getLiteralPrefix(), id);
+      return;
+    }
+
+    Node node = root;
+    for (int i = 0; i < segments.size(); i++) {
+      switch (kinds.get(i)) {
+        case TAIL:
+          node.tails = append(node.tails, id);
+          return;
+        case WILDCARD:
+          if (node.wildcard == null) node.wildcard = new Node();
+          node = node.wildcard;
+          break;
+        default:
+          node =
+              node.literals.computeIfAbsent(segments.get(i), k -> new Node());
+      }
+    }
+
+    node.terminals = append(node.terminals, id);
+    if (!path.endsWith("/"))
+      node.slashTerminals = append(node.slashTerminals, id);
+  }
+
+  /**
+   * Splits a path into segments and classifies each of them. A path variable is
+   * kept in one segment even it contains slashes, because it is turned into
+   * [^/]+ in the regex path.
+   *
+   * @return false if the path can't be indexed safely
+   */
+  private boolean splitPath(String path, List<String> segments,
+      List<Integer> kinds) {
+    StringBuilder segment = new StringBuilder();
+    int kind = LITERAL;
+    int singleWildcards = 0;
+
+    for (int i = 0; i < path.length(); i++) {
+      char c = path.charAt(i);
+      switch (c) {
+        case '{':
+          int end = path.indexOf('}', i + 1);
+          if (end <= i + 1 || path.substring(i + 1, end).indexOf('{') != -1)
+            return false;
+          segment.append(path, i, end + 1);
+          kind = Math.max(kind, WILDCARD);
+          i = end;
+          break;
+        case '}':
+        case '$':
+        case '"':
+          return false;
+        case '*':
+          if (i + 1 < path.length() && path.charAt(i + 1) == '*') {
+            segment.append(c);
+            kind = TAIL;
+            i++;
+          } else {
+            singleWildcards++;
+            kind = Math.max(kind, WILDCARD);
+          }
+          segment.append(c);
+          break;
+        case '?':
+          segment.append(c);
+          kind = TAIL;
+          break;
+        case '/':
+          segments.add(segment.toString());
+          kinds.add(kind);
+          segment.setLength(0);
+          kind = LITERAL;
+          break;
+        default:
+          segment.append(c);
+      }
+    }
+    segments.add(segment.toString());
+    kinds.add(kind);
+
+    return singleWildcards <= 1;
+  }
+
+  private static void setAll(BitSet bitSet, int[] ids) {
+    for (int id : ids) {
+      bitSet.set(id);
+    }
+  }
+
+  private static int[] append(int[] ids, int id) {
+    int[] newIds = Arrays.copyOf(ids, ids.length + 1);
+    newIds[ids.length] = id;
+    return newIds;
+  }
+
+  private static final class Node {
+
+    private static final int[] EMPTY = new int[0];
+
+    final CharSequenceTable<Node> literals = new CharSequenceTable<>();
+    Node wildcard;
+    int[] tails = EMPTY;
+    int[] terminals = EMPTY;
+    int[] slashTerminals = EMPTY;
+
+  }
+
+}
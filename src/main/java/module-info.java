@@ -2,6 +2,8 @@ open module com.github.wnameless.spring.routing.resolver {
   requires com.google.common;
   requires spring.core;
   requires spring.beans;
+  requires static micrometer.core;
+  requires static spring.webmvc;
   requires transitive spring.web;
   requires transitive spring.context;
 
@@ -19,26 +19,82 @@ package com.github.wnameless.spring.routing.resolver;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static net.sf.rubycollect4j.RubyCollections.ra;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.lang.annotation.Annotation;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
 import org.springframework.context.ApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.core.env.Environment;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.mock.env.MockEnvironment;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
 
 import com.github.wnameless.spring.routing.resolver.test.Application;
+import com.github.wnameless.spring.routing.resolver.test.TestRoutingManifest;
+import com.github.wnameless.spring.routing.resolver.test.controller.TestController;
+import com.github.wnameless.spring.routing.resolver.test.controller2.ctrl.TestController2;
 import com.github.wnameless.spring.routing.resolver.test.controller2.ctrl.TestMethodAnno;
 import com.github.wnameless.spring.routing.resolver.test.controller2.ctrl.TestTypeAnno;
+import com.github.wnameless.spring.routing.resolver.test.controller4.TestController4;
+import com.github.wnameless.spring.routing.resolver.test.controller5.TestApi;
+import com.github.wnameless.spring.routing.resolver.test.controller5.TestBaseController;
+import com.github.wnameless.spring.routing.resolver.test.controller5.TestController5;
+import com.github.wnameless.spring.routing.resolver.test.controller5.TestGetJson;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import nl.jqno.equalsverifier.EqualsVerifier;
 
 @ExtendWith(SpringExtension.class)
@@ -58,6 +114,8 @@ public class RoutingPathResolverTest {
 
   RoutingPathResolver pathRes3;
 
+  RoutingPathResolver pathRes4;
+
   @BeforeEach
   public void setUp() {
     pathRes = new RoutingPathResolver(appCtx,
@@ -66,6 +124,8 @@ public class RoutingPathResolverTest {
         "com.github.wnameless.spring.routing.resolver.test.controller2");
     pathRes3 = new RoutingPathResolver(appCtx,
         "com.github.wnameless.spring.routing.resolver.test.controller3");
+    pathRes4 = new RoutingPathResolver(appCtx,
+        "com.github.wnameless.spring.routing.resolver.test.controller4");
   }
 
   @Test
@@ -135,6 +195,48 @@ public class RoutingPathResolverTest {
         pathRes2.findByParameterAnnotationType(PathVariable.class).size());
   }
 
+  @Test
+  public void testFindByAnnotationTypeIsShared() {
+    assertSame(pathRes2.findByAnnotationType(TestTypeAnno.class),
+        pathRes2.findByAnnotationType(TestTypeAnno.class));
+    assertEquals(
+        ra(pathRes2.getRoutingPaths())
+            .select(rp -> rp.getMethodAnnotations().stream().anyMatch(
+                ma -> ma.annotationType().equals(TestMethodAnno.class))),
+        pathRes2.findByAnnotationType(TestMethodAnno.class));
+    assertThrows(UnsupportedOperationException.class,
+        () -> pathRes2.findByParameterAnnotationType(PathVariable.class)
+            .clear());
+  }
+
+  @Test
+  public void testAccessorsAreShared() {
+    assertSame(pathRes2.getRoutingPaths(), pathRes2.getRoutingPaths());
+    assertThrows(UnsupportedOperationException.class,
+        () -> pathRes2.getRoutingPaths().clear());
+
+    RoutingPath rp = pathRes2.findByParameterAnnotationType(PathVariable.class)
+        .get(0);
+    assertSame(rp.getClassAnnotations(), rp.getClassAnnotations());
+    assertSame(rp.getMethodAnnotations(), rp.getMethodAnnotations());
+    assertSame(rp.getParameterAnnotations(), rp.getParameterAnnotations());
+    assertSame(rp.getParameterAnnotations().get(0),
+        rp.getParameterAnnotations().get(0));
+    assertThrows(UnsupportedOperationException.class,
+        () -> rp.getParameterAnnotations().get(0).clear());
+
+    List<List<Annotation>> parameterAnnotations = new ArrayList<>();
+    parameterAnnotations.add(new ArrayList<>(rp.getMethodAnnotations()));
+    RoutingEntry entry = new RoutingEntry(
+        ImmutableSet.of(RequestMethod.GET), "/a", "/a", "/?a/?", null,
+        rp.getClassAnnotations(), rp.getMethodAnnotations(),
+        parameterAnnotations);
+    assertSame(rp.getClassAnnotations(), entry.classAnnotations);
+    parameterAnnotations.get(0).clear();
+    assertEquals(rp.getMethodAnnotations(),
+        entry.parameterAnnotations.get(0));
+  }
+
   @Test
   public void testEmptyMethod() {
     assertTrue(ra(pathRes2.findByMethodAnnotationType(TestMethodAnno.class))
@@ -155,11 +257,58 @@ public class RoutingPathResolverTest {
             .getRawPath());
   }
 
+  @Test
+  public void testFindBestMatchByRequestPathAndMethod() {
+    assertNull(pathRes4.findBestMatchByRequestPathAndMethod("/trie/lit/x",
+        RequestMethod.DELETE));
+    assertEquals("/trie/lit", pathRes4
+        .findBestMatchByRequestPathAndMethod("/trie/lit", RequestMethod.GET)
+        .getPath());
+    assertEquals("/trie/lit/{b}", pathRes4
+        .findBestMatchByRequestPathAndMethod("/trie/lit/x", RequestMethod.GET)
+        .getPath());
+    assertEquals("/trie/{a}/x", pathRes4
+        .findBestMatchByRequestPathAndMethod("/trie/q/x", RequestMethod.GET)
+        .getPath());
+    assertEquals("/trie/**/z", pathRes4
+        .findBestMatchByRequestPathAndMethod("/trie/q/w/z", RequestMethod.GET)
+        .getPath());
+    assertEquals("/trie/haha/*.json",
+        pathRes4.findBestMatchByRequestPathAndMethod("/trie/haha/a.json",
+            RequestMethod.POST).getPath());
+    assertEquals("/trie/*/*", pathRes4
+        .findBestMatchByRequestPathAndMethod("/trie/any/x", RequestMethod.POST)
+        .getPath());
+    assertEquals("/trie/any/**", pathRes4.findBestMatchByRequestPathAndMethod(
+        "/trie/any/x/y", RequestMethod.POST).getPath());
+  }
+
   @Test
   public void testFindByRequestPath() {
     assertEquals(8, pathRes2.findByRequestPath("/b").size());
   }
 
+  @Test
+  public void testCache() {
+    RoutingPathResolver cachedRes = new RoutingPathResolver(appCtx,
+        RoutingPathResolverOptions.defaults().withCache(2),
+        "com.github.wnameless.spring.routing.resolver.test.controller");
+
+    RoutingPath rp = cachedRes.findByRequestPathAndMethod("/home/index/gogo/",
+        RequestMethod.GET);
+    assertEquals("/home/index/{ph1}/", rp.getRawPath());
+    assertSame(rp, cachedRes.findByRequestPathAndMethod("/home/index/gogo/",
+        RequestMethod.GET));
+    assertNull(cachedRes.findByRequestPathAndMethod("/", RequestMethod.GET));
+    assertNull(cachedRes.findByRequestPathAndMethod("/", RequestMethod.GET));
+    assertEquals(5, cachedRes.findByRequestPath("/home/index/haha").size());
+
+    assertEquals(2, cachedRes.getCacheStats().hitCount());
+    assertEquals(3, cachedRes.getCacheStats().missCount());
+    assertEquals(1, cachedRes.getCacheStats().evictionCount());
+    assertEquals(0, pathRes.getCacheStats().requestCount());
+  }
+
   @Test
   public void testAntPattern() {
     RoutingPath rp = pathRes3.getRoutingPaths().get(0);
@@ -171,4 +320,975 @@ public class RoutingPathResolverTest {
         rp.getRegexPath().pattern());
   }
 
+  @Test
+  public void testPathTemplate() {
+    PathTemplate template =
+        PathTemplate.parse("/ant/${test.var.1}/${x:dflt}/{aaa}/**/a+b-c?.json");
+    assertTrue(template.hasPlaceholders());
+    assertEquals("/?ant/$[^/]+/$[^/]+/[^/]+/.*/a\\+b\\-c.\\.json/?",
+        template.toRegex());
+    PathTemplate resolved = template.resolve(new MockEnvironment()
+        .withProperty("test.var.1", "haha")::getProperty);
+    assertEquals("/ant/haha/dflt/{aaa}/**/a+b-c?.json",
+        resolved.getTemplate());
+    assertEquals("/?ant/haha/dflt/[^/]+/.*/a\\+b\\-c.\\.json/?",
+        resolved.toRegex());
+    assertSame(resolved, resolved.resolve((key, deFault) -> deFault));
+
+    assertEquals("/?[^/]+/end/?", PathTemplate.parse("/{p:.+}/end").toRegex());
+    assertArrayEquals(new String[] { "id", "name" },
+        PathTemplate.parse("/{ id }/{name:[a-z]+}.json").getVariableNames());
+    assertEquals("/?a/[^/]*/y/", PathTemplate.parse("a/*/y/").toRegex());
+    assertEquals("/?a.c/?", PathTemplate.parse("/a?c").toRegex());
+    assertEquals("/?/?", PathTemplate.parse("").toRegex());
+    // each single wildcard is translated on its own
+    assertEquals("/?[^/]*/[^/]*/?", PathTemplate.parse("/*/*").toRegex());
+    // dots between path variables and double wildcards
+    assertEquals("/?[^/]+\\.[^/]+/?", PathTemplate.parse("/{a}.{b}").toRegex());
+    assertEquals("/?a\\.b/.*/c\\.d/?",
+        PathTemplate.parse("/a.b/**/c.d").toRegex());
+    assertEquals("/ant/", template.getLiteralPrefix());
+    assertEquals("", PathTemplate.parse("{a}/b").getLiteralPrefix());
+  }
+
+  @Test
+  public void testLiteralPrefixIndex() {
+    // paths with more than one single wildcard or a $ can't be split
+    RoutingTrie trie = new RoutingTrie(Arrays.asList("/trie/*/*", "/x/*/*",
+        "*/*/*", "/trie/$x/*", "/trie/a"));
+    BitSet candidates = new BitSet();
+    trie.collectCandidates("/trie/a/b", 0, 9, candidates);
+    assertEquals(BitSet.valueOf(new long[] { 0b00101 }), candidates);
+    candidates.clear();
+    trie.collectCandidates("/trie/$x/b", 0, 10, candidates);
+    assertEquals(BitSet.valueOf(new long[] { 0b01101 }), candidates);
+    candidates.clear();
+    trie.collectCandidates("/x", 0, 2, candidates);
+    assertEquals(BitSet.valueOf(new long[] { 0b00100 }), candidates);
+  }
+
+  @Test
+  public void testAtomPatternWithoutRecursion() {
+    String literal = String.join("", Collections.nCopies(100, "x"));
+    AtomPattern longPattern = AtomPattern
+        .compile(PathTemplate.parse("/{a}/" + literal + "/**").toRegex());
+    String longPath = "/v/" + literal + "/"
+        + String.join("", Collections.nCopies(200000, "y"));
+    int[] groups = new int[2];
+    assertTrue(longPattern.matches(longPath, 0, longPath.length()));
+    assertTrue(longPattern.matches(longPath, 0, longPath.length(), groups));
+    assertArrayEquals(new int[] { 1, 2 }, groups);
+    // the literal is cut
+    assertTrue(!longPattern.matches(longPath, 0, 50));
+    assertTrue(!longPattern.matches(longPath, 0, 50, groups));
+
+    // exponential for a plain backtracking
+    String stars = PathTemplate.parse("/*a*a*a*a*a*a*a*a*a*a*a*a*b").toRegex();
+    AtomPattern starPattern = AtomPattern.compile(stars);
+    String as = String.join("", Collections.nCopies(3000, "a"));
+    assertTrue(!starPattern.matches(as, 0, as.length(), new int[0]));
+    assertTrue(starPattern.matches(as + "b", 0, as.length() + 1, new int[0]));
+    assertEquals(Pattern.matches(stars, "aaaaaaaaaaaaab"), starPattern
+        .matches("aaaaaaaaaaaaab", 0, 14, new int[0]));
+  }
+
+  @Test
+  public void testRoutingAutomatonFlush() {
+    List<AtomPattern> atomPatterns = Arrays
+        .asList("/a/{b}", "/a/*/c", "/\u00e9/**", "/x\u00e9y/{z}.json", "/a")
+        .stream().map(p -> AtomPattern.compile(PathTemplate.parse(p).toRegex()))
+        .collect(Collectors.toList());
+    RoutingAutomaton full = new RoutingAutomaton(id -> null, atomPatterns);
+    RoutingAutomaton flushed =
+        new RoutingAutomaton(id -> null, atomPatterns, 4);
+    for (int round = 0; round < 2; round++) {
+      for (String path : Arrays.asList("/a/b", "a/b/c/", "/\u00e9/x/y",
+          "/x\u00e9y/1.json", "/x\u00e8y/1.json", "/a", "/b")) {
+        BitSet expected = new BitSet();
+        full.collectMatches(path, 0, path.length(), expected);
+        BitSet actual = new BitSet();
+        flushed.collectMatches(path, 0, path.length(), actual);
+        assertEquals(expected, actual);
+        assertTrue(flushed.dfaStateCount() <= 4);
+      }
+    }
+  }
+
+  @Test
+  public void testFindByRequestPathAgainstRegexScan() {
+    List<String> requestPaths = newArrayList("", "/", "/trie", "/trie/",
+        "trie/lit", "/trie/lit/", "/trie/lit/b", "/trie/lit/x", "/trie/q/x/",
+        "/trie/q/y", "/trie/q/y/", "/trie/z", "/trie/q/w/z", "/trie/abc",
+        "/trie/a/c", "/trie/q/r", "/trie/q/r/", "/trie/q/r/s", "/trie//x",
+        "/trie/a/b/end", "/trie/haha/a.json", "/trie/any", "/trie/any/",
+        "/trie/any/a/b", "//trie/lit", "/home/index", "/home/index/",
+        "/home/index/gogo/", "/home/index/gogo", "/b", "/b/", "/b/a",
+        "/b/c/cc", "/ant/haha/yoyo/a/b/c/d/a+b-cd.json",
+        "/ant/haha/yoyo/a/b/c/d/a+b-c\n.json", "/trie/a\nc", "/trie/a/\u00e9");
+
+    RoutingPathResolverOptions automaton =
+        RoutingPathResolverOptions.defaults().withAutomaton();
+    // reordered on every hit
+    RoutingPathResolverOptions adaptive = RoutingPathResolverOptions
+        .defaults().withAdaptiveOrdering(Duration.ZERO, Runnable::run);
+    for (RoutingPathResolver res : newArrayList(pathRes, pathRes2, pathRes3,
+        pathRes4,
+        new RoutingPathResolver(appCtx, automaton,
+            "com.github.wnameless.spring.routing.resolver.test"),
+        new RoutingPathResolver(appCtx, adaptive,
+            "com.github.wnameless.spring.routing.resolver.test"))) {
+      for (String requestPath : requestPaths) {
+        assertEquals(scanByRequestPath(res, requestPath),
+            res.findByRequestPath(requestPath));
+        String requestUri = "/ctx" + requestPath + "?q=1";
+        for (RequestMethod method : RequestMethod.values()) {
+          assertEquals(scanByRequestPathAndMethod(res, requestPath, method),
+              res.findByRequestPathAndMethod(requestPath, method));
+          assertEquals(res.findByRequestPathAndMethod(requestPath, method),
+              res.findByRequestPathAndMethod(requestUri, 4,
+                  requestUri.length() - 4, method));
+          assertEquals(
+              res.findBestMatchByRequestPathAndMethod(requestPath, method),
+              res.findBestMatchByRequestPathAndMethod(requestUri, 4,
+                  requestUri.length() - 4, method));
+
+          RoutingMatch match = scanMatch(
+              res.findByRequestPathAndMethod(requestPath, method), requestPath);
+          assertEquals(match,
+              res.matchByRequestPathAndMethod(requestPath, method));
+          assertEquals(match, res.matchByRequestPathAndMethod(requestUri, 4,
+              requestUri.length() - 4, method));
+          RoutingMatch bestMatch = scanMatch(
+              res.findBestMatchByRequestPathAndMethod(requestPath, method),
+              requestPath);
+          assertEquals(bestMatch,
+              res.matchBestByRequestPathAndMethod(requestPath, method));
+          assertEquals(bestMatch, res.matchBestByRequestPathAndMethod(
+              requestUri, 4, requestUri.length() - 4, method));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testHotRouteOrdering() {
+    List<Runnable> reorderings = new ArrayList<>();
+    HotRouteOrdering ordering = new HotRouteOrdering(20,
+        id -> new int[] { id + 100 }, Duration.ZERO, reorderings::add, 1);
+    ordering.recordHit(3);
+    ordering.recordHit(5);
+    ordering.recordHit(5);
+    // only one reordering is scheduled at a time
+    assertEquals(1, reorderings.size());
+    assertArrayEquals(new int[0], ordering.getHotRoutes().ids);
+    reorderings.get(0).run();
+    assertArrayEquals(new int[] { 5, 3 }, ordering.getHotRoutes().ids);
+    assertArrayEquals(new int[][] { { 105 }, { 103 } },
+        ordering.getHotRoutes().overlaps);
+
+    for (int i = 0; i < 20; i++) {
+      ordering.recordHit(i);
+    }
+    assertEquals(2, reorderings.size());
+    reorderings.get(1).run();
+    assertEquals(HotRouteOrdering.HOT_LIMIT,
+        ordering.getHotRoutes().ids.length);
+    // the scores are halved, so 3 ties with the others
+    assertArrayEquals(new int[] { 5, 0, 1, 2 },
+        Arrays.copyOf(ordering.getHotRoutes().ids, 4));
+
+    // a rejected reordering is retried on a later hit
+    HotRouteOrdering rejected = new HotRouteOrdering(1, id -> new int[0],
+        Duration.ZERO, command -> {
+          throw new RejectedExecutionException();
+        }, 1);
+    rejected.recordHit(0);
+    rejected.recordHit(0);
+    rejected.reorder();
+    assertArrayEquals(new int[] { 0 }, rejected.getHotRoutes().ids);
+  }
+
+  @Test
+  public void testPathTemplateMayOverlap() {
+    assertTrue(!PathTemplate.parse("/a/{b}.x1")
+        .mayOverlap(PathTemplate.parse("/a/{b}.x2")));
+    assertTrue(
+        !PathTemplate.parse("/a/b").mayOverlap(PathTemplate.parse("/a")));
+    assertTrue(PathTemplate.parse("/a/*").mayOverlap(PathTemplate.parse("/a")));
+    assertTrue(PathTemplate.parse("/*/a").mayOverlap(PathTemplate.parse("/a")));
+    assertTrue(
+        PathTemplate.parse("/a/**").mayOverlap(PathTemplate.parse("/b/c")));
+
+    // never false if a request path is matched by both
+    String[] pieces = { "/", "a", "b", ".", "*", "**", "?", "{v}" };
+    String[] requestPieces = { "/", "a", "b", "." };
+    Random random = new Random(25);
+    List<PathTemplate> templates = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      StringBuilder path = new StringBuilder();
+      for (int p = random.nextInt(5); p >= 0; p--) {
+        path.append(pieces[random.nextInt(pieces.length)]);
+      }
+      templates.add(PathTemplate.parse(path.toString()));
+    }
+    List<Pattern> patterns = templates.stream()
+        .map(template -> Pattern.compile(template.toRegex()))
+        .collect(Collectors.toList());
+    for (int r = 0; r < 2000; r++) {
+      StringBuilder requestPath = new StringBuilder();
+      for (int p = random.nextInt(6); p > 0; p--) {
+        requestPath.append(requestPieces[random.nextInt(4)]);
+      }
+      List<Integer> matched = IntStream.range(0, patterns.size())
+          .filter(i -> patterns.get(i).matcher(requestPath).matches()).boxed()
+          .collect(Collectors.toList());
+      for (int a : matched) {
+        for (int b : matched) {
+          assertTrue(templates.get(a).mayOverlap(templates.get(b)),
+              templates.get(a) + " " + templates.get(b) + " " + requestPath);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testAdaptiveOrderingRegexWork() {
+    // AtomPattern doesn't support (?:), so every try calls subSequence once
+    List<RoutingPath> routingPaths = new ArrayList<>();
+    routingPaths.addAll(newRegexRoutingPaths("/{a}/r.{c}",
+        "/?(?:[^/]+)/r\\.[^/]+/?"));
+    for (int i = 0; i < 100; i++) {
+      routingPaths.addAll(newRegexRoutingPaths("/{a}/{b}.x" + i,
+          "/?(?:[^/]+)/[^/]+\\.x" + i + "/?"));
+    }
+    RoutingTable plain =
+        new RoutingTable(routingPaths, RoutingPathResolverOptions.defaults());
+    RoutingTable adaptive = new RoutingTable(routingPaths,
+        RoutingPathResolverOptions.defaults()
+            .withAdaptiveOrdering(Duration.ZERO, Runnable::run));
+
+    for (int i = 0; i < 1000; i++) {
+      adaptive.findFirst("/p/q.x99", 0, 8);
+    }
+    CountingPath hot = new CountingPath("/p/q.x99");
+    assertSame(routingPaths.get(100), plain.findFirst(hot, 0, 8));
+    assertEquals(101, hot.subSequences);
+    hot.subSequences = 0;
+    assertSame(routingPaths.get(100), adaptive.findFirst(hot, 0, 8));
+    // the hot regex path and the only one before it which may overlap it
+    assertEquals(2, hot.subSequences);
+    hot.subSequences = 0;
+    assertSame(plain.findBest("/p/q.x99", 0, 8), adaptive.findBest(hot, 0, 8));
+    // the hot regex path ranks before the one which may overlap it
+    assertEquals(1, hot.subSequences);
+
+    // the earlier overlapping regex path still wins
+    CountingPath shadowed = new CountingPath("/p/r.x99");
+    assertSame(routingPaths.get(0), adaptive.findFirst(shadowed, 0, 8));
+    assertEquals(2, shadowed.subSequences);
+    assertEquals(ImmutableMap.of("a", "p", "c", "x99"),
+        adaptive.matchFirst("/p/r.x99", 0, 8).getPathVariables());
+    assertEquals(ImmutableMap.of("a", "p", "b", "q"),
+        adaptive.matchFirst("/p/q.x99", 0, 8).getPathVariables());
+  }
+
+  private static List<RoutingPath> newRegexRoutingPaths(String path,
+      String regex) {
+    return new RoutingEntry(ImmutableSet.of(RequestMethod.GET), path, path,
+        regex, null, Collections.emptyList(), Collections.emptyList(),
+        Collections.emptyList()).toRoutingPaths();
+  }
+
+  private static final class CountingPath implements CharSequence {
+
+    final String path;
+    int subSequences;
+
+    CountingPath(String path) {
+      this.path = path;
+    }
+
+    @Override
+    public int length() {
+      return path.length();
+    }
+
+    @Override
+    public char charAt(int index) {
+      return path.charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      subSequences++;
+      return path.subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+      return path;
+    }
+
+  }
+
+  @Test
+  public void testFindByRequestPathAndMethodWithoutAllocation() {
+    assumeTrue(allocatedBytes() >= 0);
+
+    StringBuilder requestUri =
+        new StringBuilder("/ctx/trie/lit/q/w/z;jsessionid=1?q=1");
+    for (int i = 0; i < 20000; i++) {
+      findOnRange(requestUri);
+    }
+
+    long before = allocatedBytes();
+    for (int i = 0; i < 20000; i++) {
+      findOnRange(requestUri);
+    }
+    long allocated = allocatedBytes() - before;
+
+    assertTrue(allocated < 20000, allocated + " bytes allocated");
+  }
+
+  // the management modules are not read by this module, so reflection is used
+  private long allocatedBytes() {
+    try {
+      Object threadMXBean =
+          Class.forName("java.lang.management.ManagementFactory")
+              .getMethod("getThreadMXBean").invoke(null);
+      return (long) Class.forName("com.sun.management.ThreadMXBean")
+          .getMethod("getThreadAllocatedBytes", long.class)
+          .invoke(threadMXBean, Thread.currentThread().getId());
+    } catch (ReflectiveOperationException e) {
+      return -1;
+    }
+  }
+
+  private void findOnRange(CharSequence requestUri) {
+    assertEquals("/trie/**/z", pathRes4
+        .findByRequestPathAndMethod(requestUri, 4, 19, RequestMethod.GET)
+        .getPath());
+    assertEquals("/trie/lit", pathRes4
+        .findByRequestPathAndMethod(requestUri, 4, 13, RequestMethod.GET)
+        .getPath());
+    assertNull(pathRes4.findByRequestPathAndMethod(requestUri, 0, 4,
+        RequestMethod.GET));
+    assertEquals("/trie/lit/{b}", pathRes4.findBestMatchByRequestPathAndMethod(
+        requestUri, 4, 15, RequestMethod.GET).getPath());
+  }
+
+  @Test
+  public void testFindByRequestPathsAndMethods() {
+    List<String> paths = Arrays.asList("/trie/lit", "/trie/lit/x",
+        "/trie/q/x", "/trie/q/w/z", "/trie/haha/a.json", "/trie/any/x", "/");
+    List<Entry<String, RequestMethod>> requests = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      requests.add(Maps.immutableEntry(paths.get(i % paths.size()),
+          RequestMethod.values()[i % RequestMethod.values().length]));
+    }
+
+    List<RoutingPath> expected = requests.stream()
+        .map(r -> pathRes4.findByRequestPathAndMethod(r.getKey(),
+            r.getValue()))
+        .collect(Collectors.toList());
+    assertTrue(expected.contains(null));
+    assertEquals(expected, pathRes4.findByRequestPathsAndMethods(requests));
+    assertEquals(expected,
+        pathRes4.findByRequestPathsAndMethods(requests, true));
+    assertEquals(expected, pathRes4
+        .findByRequestPathsAndMethods(requests.parallelStream())
+        .collect(Collectors.toList()));
+    assertThrows(UnsupportedOperationException.class,
+        () -> pathRes4.findByRequestPathsAndMethods(requests).clear());
+  }
+
+  @Test
+  public void testRequestPathNormalizer() {
+    RequestPathNormalizer normalizer = RequestPathNormalizer.defaults();
+    String path = "/trie/lit/x";
+    assertSame(path, normalizer.normalize(path));
+    assertSame(path, normalizer.normalize(path, 5, 9));
+    assertEquals("/a/b c/d",
+        normalizer.normalize("//a;jsessionid=1//x/../b%20c/./d/"));
+    // encoded separators and escapes are never decoded
+    assertEquals("/a/%253B/é", normalizer.normalize("/a;b/%253B/%C3%A9"));
+    assertEquals("/public/..%2Fadmin",
+        normalizer.normalize("/public/..%2Fadmin"));
+    assertEquals("/public/%2E%2E/admin",
+        normalizer.normalize("/public/%2E%2E/admin"));
+    assertEquals("/a%2F%2fb%5Cc", normalizer.normalize("/a%2F%2fb%5Cc"));
+    assertEquals("/a%3Bb", normalizer.normalize("/a%3Bb"));
+    assertEquals("/", normalizer.normalize("/../"));
+    assertEquals("/a", normalizer.normalize("/a/."));
+    assertEquals("/a/",
+        normalizer.withTrailingSlashRemoval(false).normalize("/a/b/.."));
+    assertEquals("/a%2", normalizer.normalize("/a%2"));
+    assertEquals("/a//b;c/",
+        normalizer.withDecoding(false).withSlashCollapsing(false)
+            .withMatrixParameterStripping(false).withDotSegmentRemoval(false)
+            .withTrailingSlashRemoval(false).normalize("/a//b;c/"));
+    assertEquals("lit", normalizer.normalize("/trie/lit;v=1/x", 6, 14));
+
+    // normalizing a normalized path changes nothing
+    Random random = new Random(22);
+    String[] pieces = { "/", ".", "..", "a", ";", "%", "2", "5", "F", "E",
+        "%2F", "%2E", "%25", "%3B", "%5C", "%20", "%C3%A9", "%C3" };
+    for (int i = 0; i < 10000; i++) {
+      StringBuilder randomPath = new StringBuilder();
+      for (int p = random.nextInt(12); p >= 0; p--) {
+        randomPath.append(pieces[random.nextInt(pieces.length)]);
+      }
+      String once = normalizer.normalize(randomPath.toString());
+      assertEquals(once, normalizer.normalize(once), randomPath.toString());
+    }
+
+    RoutingPathResolver normalized = new RoutingPathResolver(appCtx,
+        RoutingPathResolverOptions.defaults().withNormalizer(normalizer),
+        "com.github.wnameless.spring.routing.resolver.test.controller");
+    assertNull(pathRes.findByRequestPathAndMethod("/home/index/gogo",
+        RequestMethod.GET));
+    assertEquals("/home/index/{ph1}/", normalized
+        .findByRequestPathAndMethod("/home/index/gogo", RequestMethod.GET)
+        .getPath());
+    RoutingMatch match = normalized.matchByRequestPathAndMethod(
+        "//home/./index;a=b/go%20go/", RequestMethod.GET);
+    assertEquals("/home/index/{ph1}/", match.getRoutingPath().getPath());
+    assertEquals(ImmutableMap.of("ph1", "go go"), match.getPathVariables());
+    // the trailing slash of /home/index/{ph1}/ is not required anymore
+    assertEquals(6, normalized.findByRequestPath("/home/index/haha").size());
+    assertEquals(normalized.findByRequestPath("/home/index/haha"),
+        normalized.findByRequestPath("/home//index/haha/"));
+  }
+
+  @Test
+  public void testMatchBestByRequestPathAndMethod() {
+    RoutingMatch match = pathRes4
+        .matchBestByRequestPathAndMethod("/trie/lit/q/", RequestMethod.GET);
+    assertEquals("/trie/lit/{b}", match.getRoutingPath().getPath());
+    assertEquals(ImmutableMap.of("b", "q"), match.getPathVariables());
+
+    match = pathRes4.matchBestByRequestPathAndMethod("/trie/q/r",
+        RequestMethod.GET);
+    assertEquals("/trie/{a}/{b}", match.getRoutingPath().getPath());
+    assertEquals(ImmutableMap.of("a", "q", "b", "r"),
+        match.getPathVariables());
+
+    match = pathRes4.matchBestByRequestPathAndMethod("/trie/ab/end",
+        RequestMethod.POST);
+    assertEquals("/trie/{p:.+}/end", match.getRoutingPath().getPath());
+    assertEquals(ImmutableMap.of("p", "ab"), match.getPathVariables());
+
+    match = pathRes4.matchBestByRequestPathAndMethod("/trie/lit",
+        RequestMethod.GET);
+    assertEquals(ImmutableMap.of(), match.getPathVariables());
+
+    assertNull(pathRes4.matchBestByRequestPathAndMethod("/trie/lit/q/r",
+        RequestMethod.GET));
+  }
+
+  @Test
+  public void testSharedRoutingEntries() {
+    RoutingPathResolver res = new RoutingPathResolver(appCtx,
+        "com.github.wnameless.spring.routing.resolver.test.controller4");
+    List<RoutingPath> anyPaths = res.getRoutingPaths().stream()
+        .filter(rp -> rp.getPath().equals("/trie/any/**"))
+        .collect(Collectors.toList());
+    assertEquals(RequestMethod.values().length, anyPaths.size());
+    for (RoutingPath rp : anyPaths) {
+      assertSame(anyPaths.get(0).getRegexPath(), rp.getRegexPath());
+      assertSame(anyPaths.get(0).getClassAnnotations(),
+          rp.getClassAnnotations());
+      assertSame(anyPaths.get(0).getMethodAnnotations(),
+          rp.getMethodAnnotations());
+      assertSame(anyPaths.get(0).getParameterAnnotations(),
+          rp.getParameterAnnotations());
+    }
+
+    RoutingPath lit = res.findByRequestPathAndMethod("/trie/lit",
+        RequestMethod.GET);
+    RoutingPath litB = res.findByRequestPathAndMethod("/trie/lit/b",
+        RequestMethod.GET);
+    assertSame(lit.getClassAnnotations(),
+        anyPaths.get(0).getClassAnnotations());
+    assertSame(lit.getMethodAnnotations(), litB.getMethodAnnotations());
+    assertEquals(lit, new RoutingPath(lit.getMethod(), lit.getRawPath(),
+        lit.getPath(), lit.getRegexPath(),
+        TestController4.class.getAnnotations(),
+        lit.getMethodAnnotations().toArray(new Annotation[0]),
+        new Annotation[0][]));
+  }
+
+  @Test
+  public void testParallelBuild() {
+    RoutingPathResolver serial = new RoutingPathResolver(appCtx,
+        "com.github.wnameless.spring.routing.resolver.test");
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      for (RoutingPathResolverOptions options : newArrayList(
+          RoutingPathResolverOptions.defaults().withParallelBuild(),
+          RoutingPathResolverOptions.defaults().withParallelBuild(executor))) {
+        RoutingPathResolver parallel = new RoutingPathResolver(appCtx, options,
+            "com.github.wnameless.spring.routing.resolver.test");
+        assertEquals(serial.getRoutingPaths().toString(),
+            parallel.getRoutingPaths().toString());
+        assertEquals(
+            serial.findByRequestPath("/trie/lit/x").toString(),
+            parallel.findByRequestPath("/trie/lit/x").toString());
+        assertEquals(
+            serial.findByAnnotationType(TestTypeAnno.class).toString(),
+            parallel.findByAnnotationType(TestTypeAnno.class).toString());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testLazyPatterns() throws Exception {
+    RoutingPathResolver lazy = new RoutingPathResolver(appCtx,
+        RoutingPathResolverOptions.defaults().withLazyPatterns(),
+        "com.github.wnameless.spring.routing.resolver.test");
+    RoutingPathResolver eager = new RoutingPathResolver(appCtx,
+        "com.github.wnameless.spring.routing.resolver.test");
+    assertEquals(eager.getRoutingPaths(), lazy.getRoutingPaths());
+
+    for (RoutingPath rp : lazy.getRoutingPaths()) {
+      assertTrue(!rp.getEntry().isRegexPathCompiled());
+    }
+
+    RoutingPath rp = lazy.findBestMatchByRequestPathAndMethod("/trie/q/x",
+        RequestMethod.GET);
+    assertEquals("/trie/{a}/x", rp.getPath());
+    assertTrue(!rp.getEntry().isRegexPathCompiled());
+    assertSame(rp.getRegexPath(), rp.getRegexPath());
+    assertTrue(rp.getRegexPath().matcher("/trie/q/x").matches());
+  }
+
+  @Test
+  public void testFromManifest() {
+    RoutingPathResolver reflective = new RoutingPathResolver(appCtx,
+        "com.github.wnameless.spring.routing.resolver.test");
+    RoutingPathResolver manifest = RoutingPathResolver.fromManifest(env,
+        new TestRoutingManifest(),
+        "com.github.wnameless.spring.routing.resolver.test");
+    assertEquals(reflective.getRoutingPaths().size(),
+        manifest.getRoutingPaths().size());
+    assertEquals(new HashSet<>(reflective.getRoutingPaths()),
+        new HashSet<>(manifest.getRoutingPaths()));
+
+    manifest = RoutingPathResolver.fromManifest(env, new TestRoutingManifest(),
+        "com.github.wnameless.spring.routing.resolver.test.controller4");
+    assertEquals(new HashSet<>(pathRes4.getRoutingPaths()),
+        new HashSet<>(manifest.getRoutingPaths()));
+
+    assertThrows(IllegalStateException.class,
+        () -> RoutingPathResolver.fromManifest(env,
+            () -> newArrayList(new MappingMethod(
+                TestController2.class.getName(), "home3")),
+            "com.github.wnameless.spring.routing.resolver.test"));
+  }
+
+  @Test
+  public void testComposedMappingAnnotations() {
+    RoutingPathResolver res = new RoutingPathResolver(appCtx,
+        "com.github.wnameless.spring.routing.resolver.test.controller5");
+    assertEquals("/composed",
+        res.findByRequestPathAndMethod("/composed", RequestMethod.GET)
+            .getRawPath());
+    assertNull(
+        res.findByRequestPathAndMethod("/composed", RequestMethod.POST));
+
+    // annotations are read once per class and shared among resolvers
+    RoutingPathResolver res2 = new RoutingPathResolver(appCtx,
+        "com.github.wnameless.spring.routing.resolver.test.controller5");
+    assertSame(res.getRoutingPaths().get(0).getClassAnnotations(),
+        res.getRoutingPaths().get(1).getClassAnnotations());
+    assertSame(res.getRoutingPaths().get(1).getMethodAnnotations(),
+        res2.getRoutingPaths().get(1).getMethodAnnotations());
+  }
+
+  @Test
+  public void testFromHandlerMethods() {
+    RoutingPathResolver handlerRes = RoutingPathResolver.fromHandlerMethods(
+        appCtx,
+        "com.github.wnameless.spring.routing.resolver.test.controller4");
+    assertEquals(
+        ra(pathRes4.getRoutingPaths()).map(rp -> rp.getMethod() + " "
+            + rp.getPath() + " " + rp.getRegexPath().pattern()).sort(),
+        ra(handlerRes.getRoutingPaths()).map(rp -> rp.getMethod() + " "
+            + rp.getPath() + " " + rp.getRegexPath().pattern()).sort());
+    assertEquals("/trie/haha/*.json",
+        handlerRes.findBestMatchByRequestPathAndMethod("/trie/haha/a.json",
+            RequestMethod.POST).getRawPath());
+
+    // inherited and interface mappings are missed by reflection
+    RoutingPathResolver reflective = new RoutingPathResolver(appCtx,
+        "com.github.wnameless.spring.routing.resolver.test.controller5");
+    handlerRes = RoutingPathResolver.fromHandlerMethods(appCtx,
+        "com.github.wnameless.spring.routing.resolver.test.controller5");
+    assertEquals(ra("GET /declared", "GET /composed"),
+        ra(reflective.getRoutingPaths())
+            .map(rp -> rp.getMethod() + " " + rp.getPath()));
+    assertEquals(
+        ra("GET /ctrl5/composed", "GET /ctrl5/declared", "GET /ctrl5/inherited",
+            "GET /ctrl5/items/{id}"),
+        ra(handlerRes.getRoutingPaths())
+            .map(rp -> rp.getMethod() + " " + rp.getPath()).sort());
+    assertEquals(1,
+        handlerRes.findByMethodAnnotationType(TestGetJson.class).size());
+
+    handlerRes.refresh(appCtx);
+    assertEquals(4, handlerRes.getRoutingPaths().size());
+  }
+
+  @Test
+  public void testRefresh() throws Exception {
+    RoutingPathResolver full = new RoutingPathResolver(appCtx,
+        "com.github.wnameless.spring.routing.resolver.test");
+    RoutingPathResolver res = new RoutingPathResolver(appCtx,
+        "com.github.wnameless.spring.routing.resolver.test");
+    res.refresh(appCtx);
+    assertEquals(full.getRoutingPaths(), res.getRoutingPaths());
+
+    res.removeControllers(TestController2.class);
+    List<RoutingPath> paths = new ArrayList<>(full.getRoutingPaths());
+    paths.removeAll(pathRes2.getRoutingPaths());
+    assertEquals(paths, res.getRoutingPaths());
+    assertTrue(res.findByAnnotationType(TestTypeAnno.class).stream()
+        .noneMatch(pathRes2.getRoutingPaths()::contains));
+
+    new RoutingRefreshListener(res)
+        .onApplicationEvent(new ContextRefreshedEvent(appCtx));
+    assertEquals(new HashSet<>(full.getRoutingPaths()),
+        new HashSet<>(res.getRoutingPaths()));
+    assertEquals(full.findByAnnotationType(TestTypeAnno.class),
+        res.findByAnnotationType(TestTypeAnno.class));
+    paths = res.getRoutingPaths();
+    res.addControllers(TestController2.class);
+    assertEquals(paths, res.getRoutingPaths());
+
+    // lookups are never blocked or broken while swapping
+    AtomicBoolean done = new AtomicBoolean();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<Integer> lookups = executor.submit(() -> {
+        int count = 0;
+        for (; !done.get(); count++) {
+          assertEquals("/trie/{a}/x", res.findBestMatchByRequestPathAndMethod(
+              "/trie/q/x", RequestMethod.GET).getPath());
+        }
+        return count;
+      });
+      for (int i = 0; i < 20; i++) {
+        res.removeControllers(TestController2.class);
+        res.addControllers(TestController2.class);
+      }
+      done.set(true);
+      assertTrue(lookups.get() > 0);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testSnapshot(@TempDir Path dir) throws Exception {
+    Path snapshotFile = dir.resolve("routing.snapshot");
+    RoutingPathResolverOptions options =
+        RoutingPathResolverOptions.defaults().withSnapshot(snapshotFile);
+    RoutingPathResolver scanned = new RoutingPathResolver(appCtx, options,
+        "com.github.wnameless.spring.routing.resolver.test");
+    assertTrue(Files.isRegularFile(snapshotFile));
+    byte[] snapshot = Files.readAllBytes(snapshotFile);
+
+    // a loaded snapshot is not written again
+    FileTime time = FileTime.fromMillis(0);
+    Files.setLastModifiedTime(snapshotFile, time);
+    RoutingPathResolver loaded = new RoutingPathResolver(appCtx, options,
+        "com.github.wnameless.spring.routing.resolver.test");
+    assertEquals(time, Files.getLastModifiedTime(snapshotFile));
+    assertEquals(scanned.getRoutingPaths(), loaded.getRoutingPaths());
+    assertEquals(
+        scanned.findByRequestPathAndMethod("/home/index/haha",
+            RequestMethod.POST),
+        loaded.findByRequestPathAndMethod("/home/index/haha",
+            RequestMethod.POST));
+
+    // different controllers
+    loaded = new RoutingPathResolver(appCtx, options,
+        "com.github.wnameless.spring.routing.resolver.test.controller4");
+    assertEquals(pathRes4.getRoutingPaths(), loaded.getRoutingPaths());
+    assertTrue(!Arrays.equals(snapshot, Files.readAllBytes(snapshotFile)));
+
+    // changed place holders
+    RoutingPathResolver.fromManifest(env, new TestRoutingManifest(), options,
+        "com.github.wnameless.spring.routing.resolver.test");
+    Files.setLastModifiedTime(snapshotFile, time);
+    RoutingPathResolver.fromManifest(env, new TestRoutingManifest(), options,
+        "com.github.wnameless.spring.routing.resolver.test");
+    assertEquals(time, Files.getLastModifiedTime(snapshotFile));
+    MockEnvironment mockEnv = new MockEnvironment()
+        .withProperty("test.var.1", "hehe").withProperty("test.var.3", "yoyo");
+    loaded = RoutingPathResolver.fromManifest(mockEnv,
+        new TestRoutingManifest(), options,
+        "com.github.wnameless.spring.routing.resolver.test");
+    assertEquals("/home/index/hehe", loaded
+        .findByRequestPathAndMethod("/home/index/hehe", RequestMethod.POST)
+        .getPath());
+    assertNull(loaded.findByRequestPathAndMethod("/home/index/haha",
+        RequestMethod.POST));
+    assertTrue(!time.equals(Files.getLastModifiedTime(snapshotFile)));
+
+    // broken snapshot
+    Files.write(snapshotFile, Arrays.copyOf(snapshot, snapshot.length / 2));
+    loaded = new RoutingPathResolver(appCtx, options,
+        "com.github.wnameless.spring.routing.resolver.test");
+    assertEquals(scanned.getRoutingPaths(), loaded.getRoutingPaths());
+    assertArrayEquals(snapshot, Files.readAllBytes(snapshotFile));
+
+    // inherited handler methods are restored into their own controller
+    RoutingPathResolver handlerRes = RoutingPathResolver.fromHandlerMethods(
+        appCtx, options,
+        "com.github.wnameless.spring.routing.resolver.test.controller5");
+    Files.setLastModifiedTime(snapshotFile, time);
+    RoutingPathResolver loadedHandlerRes =
+        RoutingPathResolver.fromHandlerMethods(appCtx, options,
+            "com.github.wnameless.spring.routing.resolver.test.controller5");
+    assertEquals(time, Files.getLastModifiedTime(snapshotFile));
+    assertEquals(handlerRes.getRoutingPaths(),
+        loadedHandlerRes.getRoutingPaths());
+    loadedHandlerRes.removeControllers(TestController5.class);
+    assertTrue(loadedHandlerRes.getRoutingPaths().isEmpty());
+
+    // the resolved paths of handler methods and the build mode are keyed
+    try (ConfigurableApplicationContext hehe = newHandlerContext("hehe");
+        ConfigurableApplicationContext hoho = newHandlerContext("hoho")) {
+      String basePackage =
+          "com.github.wnameless.spring.routing.resolver.test.controller";
+      RoutingPathResolver.fromHandlerMethods(hehe, options, basePackage);
+      Files.setLastModifiedTime(snapshotFile, time);
+      assertNull(RoutingPathResolver.fromHandlerMethods(hehe, options,
+          basePackage).findByRequestPathAndMethod("/home/index/hoho",
+              RequestMethod.POST));
+      assertEquals(time, Files.getLastModifiedTime(snapshotFile));
+      loaded =
+          RoutingPathResolver.fromHandlerMethods(hoho, options, basePackage);
+      assertEquals("/home/index/hoho", loaded
+          .findByRequestPathAndMethod("/home/index/hoho", RequestMethod.POST)
+          .getPath());
+      assertTrue(!time.equals(Files.getLastModifiedTime(snapshotFile)));
+
+      Files.setLastModifiedTime(snapshotFile, time);
+      new RoutingPathResolver(hoho, options, basePackage);
+      assertTrue(!time.equals(Files.getLastModifiedTime(snapshotFile)));
+    }
+
+    // the super types and the composed mapping annotations are fingerprinted
+    assertTrue(RoutingSnapshot.mappingSources(TestController5.class)
+        .containsAll(Arrays.asList(TestController5.class,
+            TestBaseController.class, TestApi.class, TestGetJson.class,
+            RequestMapping.class)));
+  }
+
+  private static ConfigurableApplicationContext newHandlerContext(
+      String var1) {
+    AnnotationConfigApplicationContext ctx =
+        new AnnotationConfigApplicationContext();
+    ctx.getEnvironment().getPropertySources().addFirst(
+        new MapPropertySource("test", ImmutableMap.of("test.var.1", var1)));
+    ctx.registerBean(TestController.class);
+    ctx.registerBean(RequestMappingHandlerMapping.class);
+    ctx.refresh();
+    return ctx;
+  }
+
+  @Test
+  public void testAccessLogAnalyzer(@TempDir Path dir) throws Exception {
+    StringBuilder log = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      log.append("127.0.0.1 - - [10/Oct/2000:13:55:36 -0700] ")
+          .append("\"GET /trie/lit/x?q=").append(i)
+          .append(" HTTP/1.1\" 200 2326\r\n");
+      log.append("127.0.0.1 - - [10/Oct/2000:13:55:37 -0700] ")
+          .append("\"POST /trie/haha/a.json HTTP/1.1\" 200 0\n");
+      log.append("127.0.0.1 - - [10/Oct/2000:13:55:38 -0700] ")
+          .append("\"CONNECT /trie/lit HTTP/1.1\" 400 0\n\n");
+      log.append("not a request\n");
+    }
+    Path logFile = dir.resolve("access.log");
+    Files.write(logFile, log.toString().getBytes(StandardCharsets.UTF_8));
+
+    AccessLogReport report =
+        AccessLogAnalyzer.of(pathRes4).withChunkSize(100).analyze(logFile);
+    assertEquals(400, report.getLineCount());
+    assertEquals(100, report.getUnmatchedCount());
+    assertEquals(100, report.getMalformedCount());
+    assertEquals(pathRes4.getRoutingPaths(), report.getRoutingPathCounts()
+        .stream().map(Entry::getKey).collect(Collectors.toList()));
+    Map<String, Long> counts = new LinkedHashMap<>();
+    report.getRoutingPathCounts().forEach(e -> counts.merge(
+        e.getKey().getMethod() + " " + e.getKey().getPath(), e.getValue(),
+        Long::sum));
+    assertEquals(100, (long) counts.get("GET /trie/lit/{b}"));
+    assertEquals(100, (long) counts.get("POST /trie/haha/*.json"));
+    assertEquals(pathRes4.getRoutingPaths().size() - 2,
+        report.getUnusedRoutingPaths().size());
+
+    StringBuilder summary = new StringBuilder();
+    report.writeTo(summary);
+    assertTrue(summary.toString()
+        .startsWith("lines\t400\nunmatched\t100\nmalformed\t100\n100\t"));
+
+    // no more chunks than the parallelism are in flight
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger maxInFlight = new AtomicInteger();
+    ForkJoinPool pool = new ForkJoinPool(2) {
+
+      // a chunk is done before its result is queued for the analyzer
+      @Override
+      protected <T> RunnableFuture<T> newTaskFor(Callable<T> chunk) {
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        return new FutureTask<T>(chunk) {
+
+          @Override
+          public void run() {
+            try {
+              super.run();
+            } finally {
+              inFlight.decrementAndGet();
+            }
+          }
+
+        };
+      }
+
+    };
+    try {
+      report = AccessLogAnalyzer.of(pathRes4).withChunkSize(100)
+          .withExecutor(pool).analyze(logFile);
+      assertEquals(400, report.getLineCount());
+      assertEquals(100, (long) report.getRoutingPathCounts().stream()
+          .filter(e -> e.getKey().getPath().equals("/trie/lit/{b}"))
+          .mapToLong(Entry::getValue).sum());
+      assertTrue(maxInFlight.get() > 0 && maxInFlight.get() <= 2,
+          maxInFlight + " chunks in flight");
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testMetrics() {
+    MeterRegistry registry = new SimpleMeterRegistry();
+    MicrometerRoutingMetrics metrics = new MicrometerRoutingMetrics();
+    metrics.bindTo(registry);
+    RoutingPathResolver metricsRes = new RoutingPathResolver(appCtx,
+        RoutingPathResolverOptions.defaults().withMetrics(metrics),
+        "com.github.wnameless.spring.routing.resolver.test.controller");
+
+    for (String phase : Arrays.asList("bean_discovery", "method_scan",
+        "placeholder_resolution", "regex_compilation", "indexing")) {
+      assertTrue(registry.get("routing.resolver.build").tag("phase", phase)
+          .timer().count() > 0);
+    }
+    for (RequestMethod method : RequestMethod.values()) {
+      assertEquals(ra(metricsRes.getRoutingPaths())
+          .count(rp -> rp.getMethod() == method),
+          (long) registry.get("routing.resolver.routes")
+              .tag("method", method.name()).gauge().value());
+    }
+
+    metricsRes.findByRequestPathAndMethod("/home/index/yaya",
+        RequestMethod.GET);
+    metricsRes.findByRequestPathAndMethod("/home/index/gogo/",
+        RequestMethod.GET);
+    metricsRes.findByRequestPathAndMethod("/", RequestMethod.GET);
+    metricsRes.findByAnnotationType(RequestMapping.class);
+    String lookup = "find_by_request_path_and_method";
+    assertEquals(1, registry.get("routing.resolver.lookup")
+        .tags("lookup", lookup, "result", "literal_hit").timer().count());
+    assertEquals(1, registry.get("routing.resolver.lookup")
+        .tags("lookup", lookup, "result", "regex_hit").timer().count());
+    assertEquals(1, registry.get("routing.resolver.lookup")
+        .tags("lookup", lookup, "result", "miss").timer().count());
+    assertEquals(1, registry.get("routing.resolver.lookup")
+        .tags("lookup", "find_by_annotation_type", "result", "index_hit")
+        .timer().count());
+
+    // a normalized request path is found by the literal path index, even if
+    // the result is cached
+    registry = new SimpleMeterRegistry();
+    metrics = new MicrometerRoutingMetrics();
+    metrics.bindTo(registry);
+    metricsRes = new RoutingPathResolver(appCtx,
+        RoutingPathResolverOptions.defaults().withMetrics(metrics)
+            .withNormalizer(RequestPathNormalizer.defaults()).withCache(100),
+        "com.github.wnameless.spring.routing.resolver.test.controller");
+    for (int i = 0; i < 2; i++) {
+      assertEquals("/home/index/haha", metricsRes.findByRequestPathAndMethod(
+          "//home/index;jsessionid=1/haha/", RequestMethod.GET).getPath());
+      assertEquals(1, metricsRes.findByRequestPath("/home//index").size());
+    }
+    metricsRes.matchBestByRequestPathAndMethod("/home/index/gogo",
+        RequestMethod.GET);
+    assertEquals(2, registry.get("routing.resolver.lookup")
+        .tags("lookup", lookup, "result", "literal_hit").timer().count());
+    assertEquals(2, registry.get("routing.resolver.lookup")
+        .tags("lookup", "find_by_request_path", "result", "literal_hit")
+        .timer().count());
+    assertEquals(1, registry.get("routing.resolver.lookup")
+        .tags("lookup", "match_best_by_request_path_and_method", "result",
+            "regex_hit")
+        .timer().count());
+
+    assertSame(RoutingMetrics.NOOP,
+        RoutingPathResolverOptions.defaults().getMetrics());
+  }
+
+  @Test
+  public void testRoutingMatchEquality() {
+    EqualsVerifier.forClass(RoutingMatch.class).verify();
+  }
+
+  private RoutingMatch scanMatch(RoutingPath routingPath, String requestPath) {
+    if (routingPath == null) return null;
+
+    Map<String, String> pathVariables = new LinkedHashMap<>();
+    Matcher m = Pattern.compile(
+        routingPath.getRegexPath().pattern().replace("[^/]+", "([^/]+)"))
+        .matcher(requestPath);
+    if (m.matches()) {
+      Matcher names = Pattern.compile("\\{([^}:]+)[^}]*\\}")
+          .matcher(routingPath.getPath());
+      for (int g = 1; names.find(); g++) {
+        pathVariables.put(names.group(1), m.group(g));
+      }
+    }
+    return new RoutingMatch(routingPath, pathVariables);
+  }
+
+  private List<RoutingPath> scanByRequestPath(RoutingPathResolver res,
+      String requestPath) {
+    List<RoutingPath> paths = new ArrayList<>();
+    for (RoutingPath rp : res.getRoutingPaths()) {
+      if (rp.getPath().equals(requestPath)
+          || requestPath.matches(rp.getRegexPath().pattern()))
+        paths.add(rp);
+    }
+    return paths;
+  }
+
+  private RoutingPath scanByRequestPathAndMethod(RoutingPathResolver res,
+      String requestPath, RequestMethod method) {
+    for (RoutingPath rp : res.getRoutingPaths()) {
+      if (rp.getPath().equals(requestPath) && rp.getMethod().equals(method))
+        return rp;
+    }
+    for (RoutingPath rp : res.getRoutingPaths()) {
+      if (requestPath.matches(rp.getRegexPath().pattern())
+          && rp.getMethod().equals(method))
+        return rp;
+    }
+    return null;
+  }
+
 }
@@ -0,0 +1,89 @@
+/*
+ *
+ * Copyright 2015 Wei-Ming Wu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+package com.github.wnameless.spring.routing.resolver.test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.github.wnameless.spring.routing.resolver.MappingMethod;
+import com.github.wnameless.spring.routing.resolver.RoutingManifest;
+
+// generated by spring-routing-resolver-processor, wrapped to 80 columns
+public final class TestRoutingManifest implements RoutingManifest {
+
+  private static final List<MappingMethod> MAPPING_METHODS =
+      Collections.unmodifiableList(Arrays.asList(
+          new MappingMethod(
+              "com.github.wnameless.spring.routing.resolver.test.controller.TestController",
+              "home"),
+          new MappingMethod(
+              "com.github.wnameless.spring.routing.resolver.test.controller.TestController",
+              "home4"),
+          new MappingMethod(
+              "com.github.wnameless.spring.routing.resolver.test.controller.TestController",
+              "home3"),
+          new MappingMethod(
+              "com.github.wnameless.spring.routing.resolver.test.controller.TestController",
+              "home31"),
+          new MappingMethod(
+              "com.github.wnameless.spring.routing.resolver.test.controller.TestController",
+              "home32"),
+          new MappingMethod(
+              "com.github.wnameless.spring.routing.resolver.test.controller.TestController",
+              "home33"),
+          new MappingMethod(
+              "com.github.wnameless.spring.routing.resolver.test.controller.TestController",
+              "home34"),
+          new MappingMethod(
+              "com.github.wnameless.spring.routing.resolver.test.controller2.ctrl.TestController2",
+              "home"),
+          new MappingMethod(
+              "com.github.wnameless.spring.routing.resolver.test.controller2.ctrl.TestController2",
+              "home2"),
+          new MappingMethod(
+              "com.github.wnameless.spring.routing.resolver.test.controller2.ctrl.TestController2",
+              "home3", "java.lang.String"),
+          new MappingMethod(
+              "com.github.wnameless.spring.routing.resolver.test.controller3.TestController3",
+              "ant"),
+          new MappingMethod(
+              "com.github.wnameless.spring.routing.resolver.test.controller4.TestController4",
+              "any"),
+          new MappingMethod(
+              "com.github.wnameless.spring.routing.resolver.test.controller4.TestController4",
+              "wildcards"),
+          new MappingMethod(
+              "com.github.wnameless.spring.routing.resolver.test.controller4.TestController4",
+              "variables"),
+          new MappingMethod(
+              "com.github.wnameless.spring.routing.resolver.test.controller4.TestController4",
+              "others"),
+          new MappingMethod(
+              "com.github.wnameless.spring.routing.resolver.test.controller5.TestController5",
+              "declared"),
+          new MappingMethod(
+              "com.github.wnameless.spring.routing.resolver.test.controller5.TestController5",
+              "composed")));
+
+  @Override
+  public List<MappingMethod> getMappingMethods() {
+    return MAPPING_METHODS;
+  }
+
+}
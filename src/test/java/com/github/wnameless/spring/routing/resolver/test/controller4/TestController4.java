@@ -0,0 +1,49 @@
+/*
+ *
+ * Copyright 2020 Wei-Ming Wu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ */
+package com.github.wnameless.spring.routing.resolver.test.controller4;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/trie")
+public class TestController4 {
+
+  @GetMapping({ "/{a}/x", "/*/y/", "/**/z", "/a?c" })
+  String wildcards() {
+    return "wildcards";
+  }
+
+  @GetMapping({ "/lit", "/lit/{b}", "/{a}/{b}" })
+  String variables() {
+    return "variables";
+  }
+
+  @PostMapping({ "/*/*", "/{p:.+}/end", "/${test.var.1}/*.json" })
+  String others() {
+    return "others";
+  }
+
+  @RequestMapping("/any/**")
+  String any() {
+    return "any";
+  }
+
+}